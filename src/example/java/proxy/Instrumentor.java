@@ -1,6 +1,7 @@
 package proxy;
 
 import java.io.InputStreamReader;
+import java.nio.file.Paths;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
@@ -43,6 +44,12 @@ public class Instrumentor implements IInstrumentor {
 		
 		bootstrapper.getAccessors().registerAccessor("proxy.accessors.IMainAccessor");
 		bootstrapper.getAccessors().registerAccessor("proxy.accessors.ISomeClassAccessor");
+
+		//Instrumented classes can optionally be cached between runs, e.g. -Dproxy.classCache=cache
+		String classCacheDirectory = System.getProperty("proxy.classCache");
+		if(classCacheDirectory != null) {
+			bootstrapper.setClassCacheDirectory(Paths.get(classCacheDirectory));
+		}
 	}
 
 	@Override
@@ -27,4 +27,9 @@ public class IndexInstructionIdentifier implements IInstructionIdentifier {
 	public int identify(MethodNode method) {
 		return this.reversed ? method.instructions.size() - this.index - 1 : this.index;
 	}
+
+	@Override
+	public String getFingerprint() {
+		return this.index + ":" + this.reversed;
+	}
 }
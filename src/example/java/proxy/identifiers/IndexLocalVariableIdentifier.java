@@ -28,4 +28,9 @@ public class IndexLocalVariableIdentifier implements IInstructionIdentifier {
 	public int identify(MethodNode method) {
 		return this.reversed ? method.localVariables.size() - this.index - 1 : this.index;
 	}
+
+	@Override
+	public String getFingerprint() {
+		return this.index + ":" + this.reversed;
+	}
 }
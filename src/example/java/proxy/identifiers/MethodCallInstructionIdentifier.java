@@ -48,4 +48,13 @@ public class MethodCallInstructionIdentifier implements IInstructionIdentifier {
 		}
 		return -1;
 	}
+
+	@Override
+	public String getFingerprint() {
+		StringBuilder fingerprint = new StringBuilder().append(this.before);
+		for(int i = 0; i < this.owners.length; i++) {
+			fingerprint.append(':').append(this.owners[i]).append('.').append(this.methods[i].getName()).append(this.methods[i].getDescriptor());
+		}
+		return fingerprint.toString();
+	}
 }
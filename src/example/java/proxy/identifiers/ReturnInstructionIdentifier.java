@@ -49,4 +49,9 @@ public class ReturnInstructionIdentifier implements IInstructionIdentifier {
 		}
 		return returnIndex;
 	}
+
+	@Override
+	public String getFingerprint() {
+		return this.offset + ":" + this.last;
+	}
 }
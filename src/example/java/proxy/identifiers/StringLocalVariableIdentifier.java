@@ -30,4 +30,9 @@ public class StringLocalVariableIdentifier implements IInstructionIdentifier {
 		}
 		return -1;
 	}
+
+	@Override
+	public String getFingerprint() {
+		return String.join(",", this.names);
+	}
 }
@@ -0,0 +1,22 @@
+package pr0x79.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pr0x79.AcceptClass")
+@Label("Accept Class")
+@Description("Decision whether a loaded class is an accessor or an instrumentation target")
+public class AcceptClassEvent extends ClassEvent implements IAcceptClassEvent {
+	@Label("Accessor Candidate")
+	private boolean accessorCandidate;
+
+	@Label("Target Candidate")
+	private boolean targetCandidate;
+
+	@Override
+	public void setDecision(boolean accessorCandidate, boolean targetCandidate) {
+		this.accessorCandidate = accessorCandidate;
+		this.targetCandidate = targetCandidate;
+	}
+}
@@ -0,0 +1,37 @@
+package pr0x79.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the flight recorder events of the class transformer. All events are
+ * disabled by default and can be enabled in a recording settings file, e.g. with
+ * <code>pr0x79.ClassParse#enabled=true</code>. Disabled events are not committed and
+ * their fields are not populated
+ */
+@Category("pr0x79")
+@Enabled(false)
+@StackTrace(false)
+public abstract class ClassEvent extends Event implements IClassEvent {
+	//The flight recorder ignores private fields of event super classes
+	@Label("Class Name")
+	protected String className;
+
+	@Label("Class Loader")
+	protected String classLoader;
+
+	@Label("Class Size")
+	@DataAmount
+	protected long classSize;
+
+	@Override
+	public void setClass(String className, ClassLoader loader, long classSize) {
+		this.className = className;
+		this.classLoader = loader == null ? "bootstrap" : loader.getClass().getName();
+		this.classSize = classSize;
+	}
+}
@@ -0,0 +1,11 @@
+package pr0x79.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pr0x79.ClassParse")
+@Label("Class Parse")
+@Description("Parsing of a class file into a class node")
+public class ClassParseEvent extends ClassEvent {
+}
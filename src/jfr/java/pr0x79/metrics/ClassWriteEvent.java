@@ -0,0 +1,24 @@
+package pr0x79.metrics;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pr0x79.ClassWrite")
+@Label("Class Write")
+@Description("Writing of an instrumented class node into a class file")
+public class ClassWriteEvent extends ClassEvent implements IClassWriteEvent {
+	@Label("Instrumented Class Size")
+	@DataAmount
+	private long instrumentedClassSize;
+
+	@Label("Frames Computed")
+	private boolean framesComputed;
+
+	@Override
+	public void setResult(long instrumentedClassSize, boolean framesComputed) {
+		this.instrumentedClassSize = instrumentedClassSize;
+		this.framesComputed = framesComputed;
+	}
+}
@@ -0,0 +1,36 @@
+package pr0x79.metrics;
+
+/**
+ * Creates the flight recorder events, loaded by {@link FlightRecorderSupport}
+ */
+public class FlightRecorderEvents implements IFlightRecorderEvents {
+	public FlightRecorderEvents() {
+		//Fails if jdk.jfr is not available, so that no events are created
+		ClassEvent.class.getName();
+	}
+
+	@Override
+	public IAcceptClassEvent newAcceptClassEvent() {
+		return new AcceptClassEvent();
+	}
+
+	@Override
+	public IClassEvent newClassParseEvent() {
+		return new ClassParseEvent();
+	}
+
+	@Override
+	public IClassEvent newInstrumentClassEvent() {
+		return new InstrumentClassEvent();
+	}
+
+	@Override
+	public IClassWriteEvent newClassWriteEvent() {
+		return new ClassWriteEvent();
+	}
+
+	@Override
+	public IJumpAnalysisEvent newJumpAnalysisEvent() {
+		return new JumpAnalysisEvent();
+	}
+}
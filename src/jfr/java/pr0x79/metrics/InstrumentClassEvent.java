@@ -0,0 +1,11 @@
+package pr0x79.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pr0x79.InstrumentClass")
+@Label("Instrument Class")
+@Description("Identification and instrumentation of a class node")
+public class InstrumentClassEvent extends ClassEvent {
+}
@@ -0,0 +1,37 @@
+package pr0x79.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("pr0x79.JumpAnalysis")
+@Label("Jump Analysis")
+@Description("Data flow analysis of a method to validate the jump target of an interceptor")
+@Category("pr0x79")
+@Enabled(false)
+@StackTrace(false)
+public class JumpAnalysisEvent extends Event implements IJumpAnalysisEvent {
+	@Label("Class Name")
+	private String className;
+
+	@Label("Method Name")
+	private String methodName;
+
+	@Label("Method Descriptor")
+	private String methodDescriptor;
+
+	@Label("Instructions")
+	private int instructions;
+
+	@Override
+	public void setMethod(String className, String methodName, String methodDescriptor, int instructions) {
+		this.className = className;
+		this.methodName = methodName;
+		this.methodDescriptor = methodDescriptor;
+		this.instructions = instructions;
+	}
+}
@@ -0,0 +1,54 @@
+package pr0x79.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pr0x79.instrumentation.BytecodeInstrumentation;
+
+/**
+ * Throughput of {@link BytecodeInstrumentation#acceptsClass(String)}, the decision that is made
+ * for every loaded class. Most loaded classes are not targeted, so the class names are mostly
+ * names of JDK classes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AcceptsClassBenchmark {
+	private static final String[] CLASS_NAMES = {
+			"java/lang/String", "java/lang/Integer", "java/util/HashMap", "java/util/ArrayList",
+			"java/util/concurrent/ConcurrentHashMap", "java/io/FileInputStream", "java/net/URLClassLoader",
+			"sun/launcher/LauncherHelper", "jdk/internal/loader/ClassLoaders", "java/lang/invoke/MethodHandle",
+			"java/time/LocalDate", "java/util/stream/ReferencePipeline", "javax/management/ObjectName",
+			"program/Main", "program/SomeClass", "program/NotTargeted"
+	};
+
+	private BytecodeInstrumentation instrumentor;
+
+	@Setup
+	public void setup() {
+		this.instrumentor = BenchmarkCorpus.getBootstrapper().getInstrumentor();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(16)
+	public void acceptsClass(Blackhole blackhole) {
+		for(String className : CLASS_NAMES) {
+			blackhole.consume(this.instrumentor.acceptsClass(className));
+		}
+	}
+}
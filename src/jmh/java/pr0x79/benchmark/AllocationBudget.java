@@ -0,0 +1,74 @@
+package pr0x79.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import pr0x79.Bootstrapper;
+
+/**
+ * Checks the bytes the class transformer allocates per class against the budgets in
+ * {@link #BUDGETS}. The budgets are specified per corpus entry, see {@link BenchmarkCorpus},
+ * and cover the path of classes that are skipped without being parsed as well as the
+ * path of instrumented classes. Exits with status 1 if any budget is exceeded, so it can be
+ * run as a build step.
+ * <p>
+ * Allocations are measured with the allocation counter of the current thread after the
+ * transformer has been warmed up, so one time allocations such as the type hierarchy cache
+ * entries of the corpus classes are not counted. Escape analysis may remove allocations in
+ * the compiled transformer, the budgets must therefore be measured on the same JVM they are checked on.
+ * <pre>
+ * java -cp &lt;jmh class path&gt; pr0x79.benchmark.AllocationBudget
+ * </pre>
+ */
+public class AllocationBudget {
+	public static final String BUDGETS = "pr0x79/benchmark/allocation-budgets.properties";
+
+	private static final int WARMUP_ITERATIONS = 2000;
+	private static final int MEASUREMENT_ITERATIONS = 1000;
+
+	private AllocationBudget() { }
+
+	public static void main(String[] args) throws IOException {
+		Properties budgets = new Properties();
+		try(InputStream is = BenchmarkCorpus.getLoader().getResourceAsStream(BUDGETS)) {
+			if(is == null) {
+				throw new IOException(String.format("Allocation budgets %s not found", BUDGETS));
+			}
+			budgets.load(is);
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if(!threads.isThreadAllocatedMemorySupported()) {
+			System.err.println("Thread allocation measurement is not supported by this JVM");
+			System.exit(1);
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		Bootstrapper bootstrapper = BenchmarkCorpus.getBootstrapper();
+		ClassLoader loader = BenchmarkCorpus.getLoader();
+		boolean exceeded = false;
+		for(String entry : new TreeSet<>(budgets.stringPropertyNames())) {
+			long maxBytes = Long.parseLong(budgets.getProperty(entry).trim());
+			String className = BenchmarkCorpus.getClassName(entry);
+			byte[] classFile = BenchmarkCorpus.getClassFile(entry);
+
+			for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+				bootstrapper.transform(loader, className, classFile);
+			}
+			long threadId = Thread.currentThread().getId();
+			long start = threads.getThreadAllocatedBytes(threadId);
+			for(int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+				bootstrapper.transform(loader, className, classFile);
+			}
+			long bytesPerClass = (threads.getThreadAllocatedBytes(threadId) - start) / MEASUREMENT_ITERATIONS;
+
+			boolean entryExceeded = bytesPerClass > maxBytes;
+			exceeded |= entryExceeded;
+			System.out.println(String.format("%-30s %10d bytes per class, budget %10d%s", entry, bytesPerClass, maxBytes, entryExceeded ? " EXCEEDED" : ""));
+		}
+		System.exit(exceeded ? 1 : 0);
+	}
+}
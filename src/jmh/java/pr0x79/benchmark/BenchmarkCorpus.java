@@ -0,0 +1,166 @@
+package pr0x79.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import pr0x79.Bootstrapper;
+
+/**
+ * The classes the benchmarks are run on, and the bootstrapper they are instrumented with.
+ * The bootstrapper is initialized offline with the instrumentor, mappings and accessors of
+ * the example, so the jmh source set requires the main and example source sets.
+ * <p>
+ * The corpus consists of the example program classes and of synthetic variants of
+ * <code>program/SomeClass</code> with additional methods. The synthetic classes keep the
+ * name of the original class, so they are targeted by the same accessors. They are named
+ * <code>synthetic/&lt;methods&gt;x&lt;instructions&gt;</code> in the benchmark parameters
+ */
+public class BenchmarkCorpus {
+	public static final String INSTRUMENTOR = "proxy.Instrumentor";
+
+	private static final String SYNTHETIC_PREFIX = "synthetic/";
+	private static final String SYNTHETIC_TEMPLATE = "program/SomeClass";
+
+	//Conditional branch every n arithmetic blocks, so that the methods contain frames
+	private static final int BRANCH_INTERVAL = 16;
+
+	private static Bootstrapper bootstrapper;
+
+	private BenchmarkCorpus() { }
+
+	/**
+	 * Returns the bootstrapper, initializes it on the first call
+	 * @return
+	 */
+	public static synchronized Bootstrapper getBootstrapper() {
+		if(bootstrapper == null) {
+			bootstrapper = Bootstrapper.initializeOffline(new String[] { INSTRUMENTOR });
+			//The same class files are transformed repeatedly, they must not be shared
+			bootstrapper.setSharedClassCacheEnabled(false);
+		}
+		return bootstrapper;
+	}
+
+	/**
+	 * Returns the class loader of the corpus classes
+	 * @return
+	 */
+	public static ClassLoader getLoader() {
+		return BenchmarkCorpus.class.getClassLoader();
+	}
+
+	/**
+	 * Returns the internal name of the class of the specified corpus entry
+	 * @param entry A class name or a synthetic class
+	 * @return
+	 */
+	public static String getClassName(String entry) {
+		return entry.startsWith(SYNTHETIC_PREFIX) ? SYNTHETIC_TEMPLATE : entry;
+	}
+
+	/**
+	 * Returns the class file of the specified corpus entry
+	 * @param entry A class name or a synthetic class
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] getClassFile(String entry) throws IOException {
+		if(!entry.startsWith(SYNTHETIC_PREFIX)) {
+			return readClassFile(entry);
+		}
+		String[] size = entry.substring(SYNTHETIC_PREFIX.length()).split("x");
+		return createSyntheticClass(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+	}
+
+	/**
+	 * Returns the class files of all specified corpus entries
+	 * @param entries
+	 * @return
+	 * @throws IOException
+	 */
+	public static Map<String, byte[]> getClassFiles(String... entries) throws IOException {
+		Map<String, byte[]> classFiles = new LinkedHashMap<>();
+		for(String entry : entries) {
+			classFiles.put(entry, getClassFile(entry));
+		}
+		return classFiles;
+	}
+
+	/**
+	 * Reads the class file of the specified class from the class path
+	 * @param className The internal name of the class
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] readClassFile(String className) throws IOException {
+		InputStream is = getLoader().getResourceAsStream(className + ".class");
+		if(is == null) {
+			throw new IOException(String.format("Class file of %s not found", className));
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = is.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Creates a variant of the template class with additional methods
+	 * @param methods The number of additional methods
+	 * @param instructions The approximate number of instructions of each additional method
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] createSyntheticClass(int methods, int instructions) throws IOException {
+		ClassNode clsNode = new ClassNode();
+		new ClassReader(readClassFile(SYNTHETIC_TEMPLATE)).accept(clsNode, 0);
+		for(int i = 0; i < methods; i++) {
+			MethodNode method = new MethodNode(Opcodes.ACC_PUBLIC, "synthetic" + i, "()I", null, null);
+			InsnList insns = method.instructions;
+			insns.add(new InsnNode(Opcodes.ICONST_0));
+			insns.add(new VarInsnNode(Opcodes.ISTORE, 1));
+			for(int block = 0; block < instructions / 4; block++) {
+				insns.add(new VarInsnNode(Opcodes.ILOAD, 1));
+				insns.add(new IntInsnNode(Opcodes.BIPUSH, block & 0x7F));
+				insns.add(new InsnNode(Opcodes.IADD));
+				insns.add(new VarInsnNode(Opcodes.ISTORE, 1));
+				if(block % BRANCH_INTERVAL == BRANCH_INTERVAL - 1) {
+					LabelNode label = new LabelNode();
+					insns.add(new VarInsnNode(Opcodes.ILOAD, 1));
+					insns.add(new JumpInsnNode(Opcodes.IFGE, label));
+					insns.add(new IincInsnNode(1, 1));
+					insns.add(label);
+				}
+			}
+			insns.add(new VarInsnNode(Opcodes.ILOAD, 1));
+			insns.add(new InsnNode(Opcodes.IRETURN));
+			clsNode.methods.add(method);
+		}
+		//The synthetic methods only use ints, so no class hierarchy is needed to compute their frames
+		ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+		clsNode.accept(classWriter);
+		return classWriter.toByteArray();
+	}
+}
@@ -0,0 +1,70 @@
+package pr0x79.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pr0x79.instrumentation.BytecodeInstrumentation;
+import pr0x79.instrumentation.ClassNodeMerger;
+import pr0x79.instrumentation.InstrumentationClassWriter;
+
+/**
+ * Throughput of writing an instrumented class, i.e. merging the instrumented class node
+ * with the original class and {@link ClassWriter#toByteArray()}. The class is parsed and
+ * instrumented before each invocation, outside of the measurement
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassWriteBenchmark {
+	@Param({ "program/Main", "program/SomeClass", "synthetic/10x16", "synthetic/100x16", "synthetic/100x256" })
+	public String entry;
+
+	private BytecodeInstrumentation instrumentor;
+	private ClassLoader loader;
+	private byte[] classFile;
+	private ClassReader classReader;
+	private ClassNodeMerger merger;
+
+	@Setup
+	public void setup() throws IOException {
+		this.instrumentor = BenchmarkCorpus.getBootstrapper().getInstrumentor();
+		this.loader = BenchmarkCorpus.getLoader();
+		this.classFile = BenchmarkCorpus.getClassFile(this.entry);
+	}
+
+	@Setup(Level.Invocation)
+	public void instrument() {
+		this.classReader = new ClassReader(this.classFile);
+		ClassNode clsNode = new ClassNode();
+		this.classReader.accept(clsNode, ClassReader.EXPAND_FRAMES);
+		this.merger = new ClassNodeMerger(clsNode);
+		this.instrumentor.instrumentClass(clsNode, this.loader);
+	}
+
+	@Benchmark
+	public byte[] write() {
+		int flags = this.merger.requiresFrameComputation() ? ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS : ClassWriter.COMPUTE_MAXS;
+		ClassWriter classWriter = new InstrumentationClassWriter(this.classReader, flags, this.instrumentor.getTypeHierarchyCache(), this.loader);
+		this.merger.merge(this.classReader, classWriter);
+		return classWriter.toByteArray();
+	}
+}
@@ -0,0 +1,80 @@
+package pr0x79.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pr0x79.instrumentation.InstrumentationClassWriter;
+import pr0x79.instrumentation.TypeHierarchyCache;
+
+/**
+ * Throughput of {@link InstrumentationClassWriter#getCommonSuperClass(String, String)},
+ * once with a warm {@link TypeHierarchyCache} and once with an empty cache for each invocation,
+ * where all type headers have to be read from the class path
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommonSuperClassBenchmark {
+	private static final String[][] TYPE_PAIRS = {
+			{ "java/util/ArrayList", "java/util/LinkedList" },
+			{ "java/lang/Integer", "java/lang/Long" },
+			{ "java/io/FileInputStream", "java/io/ByteArrayInputStream" },
+			{ "java/util/HashMap", "java/util/TreeMap" },
+			{ "java/lang/IllegalArgumentException", "java/lang/IllegalStateException" },
+			{ "program/Main", "program/SomeClass" },
+			{ "java/lang/String", "java/lang/StringBuilder" },
+			{ "java/util/concurrent/ConcurrentHashMap", "java/util/Hashtable" }
+	};
+
+	/**
+	 * Exposes the common super class resolution of the class writer
+	 */
+	private static class CommonSuperClassWriter extends InstrumentationClassWriter {
+		private CommonSuperClassWriter(TypeHierarchyCache cache) {
+			super(0, cache, BenchmarkCorpus.getLoader());
+		}
+
+		private String commonSuperClass(String type1, String type2) {
+			return this.getCommonSuperClass(type1, type2);
+		}
+	}
+
+	private CommonSuperClassWriter cachedWriter;
+
+	@Setup
+	public void setup() {
+		this.cachedWriter = new CommonSuperClassWriter(new TypeHierarchyCache());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(8)
+	public void cached(Blackhole blackhole) {
+		for(String[] types : TYPE_PAIRS) {
+			blackhole.consume(this.cachedWriter.commonSuperClass(types[0], types[1]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(8)
+	public void uncached(Blackhole blackhole) {
+		CommonSuperClassWriter writer = new CommonSuperClassWriter(new TypeHierarchyCache());
+		for(String[] types : TYPE_PAIRS) {
+			blackhole.consume(writer.commonSuperClass(types[0], types[1]));
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package pr0x79.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pr0x79.instrumentation.BytecodeInstrumentation;
+import pr0x79.instrumentation.ClassNodeMerger;
+
+/**
+ * Throughput of {@link BytecodeInstrumentation#instrumentClass(ClassNode, ClassLoader)}, i.e. the
+ * identification and instrumentation of an already parsed class. The class is parsed before
+ * each invocation, outside of the measurement
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentClassBenchmark {
+	@Param({ "program/Main", "program/SomeClass", "synthetic/10x16", "synthetic/100x16", "synthetic/100x256" })
+	public String entry;
+
+	private BytecodeInstrumentation instrumentor;
+	private ClassLoader loader;
+	private byte[] classFile;
+	private ClassNode clsNode;
+
+	@Setup
+	public void setup() throws IOException {
+		this.instrumentor = BenchmarkCorpus.getBootstrapper().getInstrumentor();
+		this.loader = BenchmarkCorpus.getLoader();
+		this.classFile = BenchmarkCorpus.getClassFile(this.entry);
+	}
+
+	@Setup(Level.Invocation)
+	public void parse() {
+		this.clsNode = new ClassNode();
+		new ClassReader(this.classFile).accept(this.clsNode, ClassReader.EXPAND_FRAMES);
+		//Detaches the frames like the transformer
+		new ClassNodeMerger(this.clsNode);
+	}
+
+	@Benchmark
+	public ClassNode instrumentClass() {
+		this.instrumentor.instrumentClass(this.clsNode, this.loader);
+		return this.clsNode;
+	}
+}
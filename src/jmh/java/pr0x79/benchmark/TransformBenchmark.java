@@ -0,0 +1,52 @@
+package pr0x79.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pr0x79.Bootstrapper;
+
+/**
+ * Throughput of the complete class transformer of the {@link Bootstrapper}, i.e. filtering,
+ * parsing, identification, instrumentation and writing of a single class.
+ * Run with <code>-prof gc</code> to measure the allocation per class
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+	@Param({ "program/Main", "program/SomeClass", "synthetic/10x16", "synthetic/100x16", "synthetic/100x256" })
+	public String entry;
+
+	private Bootstrapper bootstrapper;
+	private ClassLoader loader;
+	private String className;
+	private byte[] classFile;
+
+	@Setup
+	public void setup() throws IOException {
+		this.bootstrapper = BenchmarkCorpus.getBootstrapper();
+		this.loader = BenchmarkCorpus.getLoader();
+		this.className = BenchmarkCorpus.getClassName(this.entry);
+		this.classFile = BenchmarkCorpus.getClassFile(this.entry);
+	}
+
+	@Benchmark
+	public byte[] transform() throws IOException {
+		return this.bootstrapper.transform(this.loader, this.className, this.classFile);
+	}
+}
@@ -0,0 +1,41 @@
+package pr0x79.benchmark.runtime;
+
+import pr0x79.instrumentation.accessor.ClassAccessor;
+import pr0x79.instrumentation.accessor.FieldAccessor;
+import pr0x79.instrumentation.accessor.IAccessor;
+import pr0x79.instrumentation.accessor.Interceptor;
+import pr0x79.instrumentation.accessor.InterceptorConditional;
+import pr0x79.instrumentation.accessor.InterceptorReturn;
+import pr0x79.instrumentation.accessor.LocalVar;
+import pr0x79.instrumentation.accessor.MethodAccessor;
+
+/**
+ * Accessor of the {@link RuntimeTarget}. This accessor is not modified by the class transformer,
+ * so it is loaded by the class loader of the benchmarks and can be used to call the accessors
+ */
+@ClassAccessor(classIdentifier = RuntimeInstrumentor.TARGET_CLASS)
+public interface IRuntimeAccessor extends IAccessor {
+	@FieldAccessor(fieldIdentifier = RuntimeInstrumentor.VALUE_FIELD) public int readValue();
+	@FieldAccessor(fieldIdentifier = RuntimeInstrumentor.VALUE_FIELD) public void writeValue(int value);
+
+	@MethodAccessor(methodIdentifier = RuntimeInstrumentor.COMPUTE_METHOD)
+	public int callCompute(int x);
+
+	@Interceptor(methodIdentifier = RuntimeInstrumentor.INTERCEPTED_METHOD, instructionIdentifier = RuntimeInstrumentor.START_INSTRUCTION)
+	public default void interceptCall() { }
+
+	/*
+	 * Never jumps, the value is positive. The jump is still emitted and the whole method body runs
+	 */
+	@Interceptor(methodIdentifier = RuntimeInstrumentor.CONDITIONAL_METHOD, instructionIdentifier = RuntimeInstrumentor.START_INSTRUCTION)
+	@InterceptorConditional(instructionIdentifier = RuntimeInstrumentor.RESULT_INSTRUCTION)
+	public default boolean interceptConditional() {
+		return this.readValue() < 0;
+	}
+
+	@Interceptor(methodIdentifier = RuntimeInstrumentor.RETURNING_METHOD, instructionIdentifier = RuntimeInstrumentor.START_INSTRUCTION)
+	@InterceptorReturn
+	public default int interceptReturn(@LocalVar(instructionIdentifier = RuntimeInstrumentor.X_VARIABLE) int x) {
+		return x * 31 + this.readValue();
+	}
+}
@@ -0,0 +1,19 @@
+package pr0x79.benchmark.runtime;
+
+import pr0x79.instrumentation.accessor.ClassAccessor;
+import pr0x79.instrumentation.accessor.IAccessor;
+import pr0x79.instrumentation.accessor.Interceptor;
+import pr0x79.instrumentation.accessor.LocalVar;
+
+/**
+ * Accessor of the {@link RuntimeTarget} that writes back an imported local variable.
+ * The class transformer adds the local variable setters to this accessor, so it is
+ * loaded by the {@link RuntimeTargetLoader}
+ */
+@ClassAccessor(classIdentifier = RuntimeInstrumentor.TARGET_CLASS)
+public interface IRuntimeLocalVarAccessor extends IAccessor {
+	@Interceptor(methodIdentifier = RuntimeInstrumentor.LOCAL_VAR_METHOD, instructionIdentifier = RuntimeInstrumentor.START_INSTRUCTION)
+	public default void interceptLocalVar(@LocalVar(instructionIdentifier = RuntimeInstrumentor.X_VARIABLE) int x) {
+		x = x + 1;
+	}
+}
@@ -0,0 +1,21 @@
+package pr0x79.benchmark.runtime;
+
+/**
+ * Interface of the {@link RuntimeTarget}, loaded by the class loader of the benchmarks so that
+ * the uninstrumented and the instrumented target can be called through the same type
+ */
+public interface IRuntimeTarget {
+	public int intercepted(int x);
+
+	public int localVar(int x);
+
+	public int conditional(int x);
+
+	public int returning(int x);
+
+	public int compute(int x);
+
+	public int getValue();
+
+	public void setValue(int value);
+}
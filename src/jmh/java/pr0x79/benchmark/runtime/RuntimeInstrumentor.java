@@ -0,0 +1,125 @@
+package pr0x79.benchmark.runtime;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.MethodNode;
+
+import pr0x79.Bootstrapper;
+import pr0x79.IInstrumentor;
+import pr0x79.instrumentation.identification.IClassIdentifier;
+import pr0x79.instrumentation.identification.IFieldIdentifier;
+import pr0x79.instrumentation.identification.IInstructionIdentifier;
+import pr0x79.instrumentation.identification.IMethodIdentifier;
+import pr0x79.instrumentation.identification.Identifiers;
+
+/**
+ * Instrumentor of the runtime overhead benchmarks, registers the identifiers of the
+ * {@link RuntimeTarget} and the {@link IRuntimeAccessor} and {@link IRuntimeLocalVarAccessor}
+ */
+public class RuntimeInstrumentor implements IInstrumentor {
+	public static final String TARGET_CLASS = "runtime_target";
+	public static final String VALUE_FIELD = "runtime_value";
+	public static final String INTERCEPTED_METHOD = "runtime_intercepted";
+	public static final String LOCAL_VAR_METHOD = "runtime_localVar";
+	public static final String CONDITIONAL_METHOD = "runtime_conditional";
+	public static final String RETURNING_METHOD = "runtime_returning";
+	public static final String COMPUTE_METHOD = "runtime_compute";
+	public static final String START_INSTRUCTION = "runtime_start";
+	public static final String RESULT_INSTRUCTION = "runtime_result";
+	public static final String X_VARIABLE = "runtime_x";
+
+	@Override
+	public void initBootstrapper(Bootstrapper bootstrapper) {
+		//The accessors are in a package of the agent, which is excluded by default
+		bootstrapper.getClassFilter().includePackage("pr0x79/benchmark/runtime/");
+		Identifiers identifiers = bootstrapper.getIdentifiers();
+		identifiers.registerClassIdentifier(TARGET_CLASS, new IClassIdentifier() {
+			@Override
+			public String[] getClassNames() {
+				return new String[] { Type.getInternalName(RuntimeTarget.class) };
+			}
+
+			@Override
+			public boolean isStatic() {
+				return true;
+			}
+		});
+		identifiers.registerFieldIdentifier(VALUE_FIELD, new IFieldIdentifier() {
+			@Override
+			public FieldDescription[] getFields() {
+				return new FieldDescription[] { new FieldDescription("value", "I") };
+			}
+
+			@Override
+			public boolean isStatic() {
+				return true;
+			}
+		});
+		identifiers.registerMethodIdentifier(INTERCEPTED_METHOD, method("intercepted"));
+		identifiers.registerMethodIdentifier(LOCAL_VAR_METHOD, method("localVar"));
+		identifiers.registerMethodIdentifier(CONDITIONAL_METHOD, method("conditional"));
+		identifiers.registerMethodIdentifier(RETURNING_METHOD, method("returning"));
+		identifiers.registerMethodIdentifier(COMPUTE_METHOD, method("compute"));
+		identifiers.registerInstructionIdentifier(START_INSTRUCTION, new IInstructionIdentifier() {
+			@Override
+			public InstructionType getType() {
+				return InstructionType.INSTRUCTION;
+			}
+
+			@Override
+			public int identify(MethodNode method) {
+				return 0;
+			}
+		});
+		identifiers.registerInstructionIdentifier(RESULT_INSTRUCTION, new IInstructionIdentifier() {
+			@Override
+			public InstructionType getType() {
+				return InstructionType.INSTRUCTION;
+			}
+
+			@Override
+			public int identify(MethodNode method) {
+				//The load of the result before the last return, the stack is empty there
+				for(int i = method.instructions.size() - 1; i > 0; i--) {
+					if(method.instructions.get(i).getOpcode() == Opcodes.IRETURN) {
+						return i - 1;
+					}
+				}
+				return -1;
+			}
+		});
+		identifiers.registerInstructionIdentifier(X_VARIABLE, new IInstructionIdentifier() {
+			@Override
+			public InstructionType getType() {
+				return InstructionType.LOCAL_VARIABLE;
+			}
+
+			@Override
+			public int identify(MethodNode method) {
+				return 1;
+			}
+		});
+		bootstrapper.getAccessors().registerAccessor("pr0x79.benchmark.runtime.IRuntimeAccessor");
+		bootstrapper.getAccessors().registerAccessor("pr0x79.benchmark.runtime.IRuntimeLocalVarAccessor");
+	}
+
+	private static IMethodIdentifier method(String name) {
+		return new IMethodIdentifier() {
+			@Override
+			public MethodDescription[] getMethods() {
+				return new MethodDescription[] { new MethodDescription(name, "(I)I") };
+			}
+
+			@Override
+			public boolean isStatic() {
+				return true;
+			}
+		};
+	}
+
+	@Override
+	public void onBootstrapperException(Exception ex) {
+		ex.printStackTrace();
+		System.exit(-1);
+	}
+}
@@ -0,0 +1,147 @@
+package pr0x79.benchmark.runtime;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import pr0x79.Bootstrapper;
+
+/**
+ * Steady state overhead of the code generated for accessors and interceptors. Each benchmark
+ * calls the same method of an uninstrumented {@link RuntimeTarget} (<code>*Baseline</code>) and of a
+ * {@link RuntimeTarget} that was loaded through the class transformer, see {@link RuntimeTargetLoader}.
+ * <p>
+ * The generated code should not allocate, run with <code>-prof gc</code> to check the allocation
+ * per call. {@link #main(String[])} runs this benchmark with the gc profiler, with <code>--inlining</code>
+ * the forks also print the inlining decisions of the JIT, which show whether the interceptor
+ * and accessor calls are inlined into the intercepted methods.
+ * <p>
+ * The local variables are imported by their index in the local variable table, so the jmh source
+ * set must be compiled with debug information
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuntimeOverheadBenchmark {
+	public static final String INSTRUMENTOR = "pr0x79.benchmark.runtime.RuntimeInstrumentor";
+
+	private static Bootstrapper bootstrapper;
+
+	private IRuntimeTarget baseline;
+	private IRuntimeTarget instrumented;
+	private IRuntimeAccessor accessor;
+	private int x = 3;
+
+	private static synchronized Bootstrapper getBootstrapper() {
+		if(bootstrapper == null) {
+			bootstrapper = Bootstrapper.initializeOffline(new String[] { INSTRUMENTOR });
+		}
+		return bootstrapper;
+	}
+
+	@Setup
+	public void setup() throws ReflectiveOperationException {
+		this.baseline = new RuntimeTarget();
+		ClassLoader loader = new RuntimeTargetLoader(RuntimeOverheadBenchmark.class.getClassLoader(), getBootstrapper());
+		this.instrumented = (IRuntimeTarget) loader.loadClass(RuntimeTarget.class.getName()).getDeclaredConstructor().newInstance();
+		this.accessor = (IRuntimeAccessor) this.instrumented;
+	}
+
+	@Benchmark
+	public int callBaseline() {
+		return this.baseline.intercepted(this.x);
+	}
+
+	@Benchmark
+	public int callIntercepted() {
+		return this.instrumented.intercepted(this.x);
+	}
+
+	@Benchmark
+	public int localVarBaseline() {
+		return this.baseline.localVar(this.x);
+	}
+
+	@Benchmark
+	public int localVarIntercepted() {
+		return this.instrumented.localVar(this.x);
+	}
+
+	@Benchmark
+	public int conditionalBaseline() {
+		return this.baseline.conditional(this.x);
+	}
+
+	@Benchmark
+	public int conditionalIntercepted() {
+		return this.instrumented.conditional(this.x);
+	}
+
+	@Benchmark
+	public int returnBaseline() {
+		return this.baseline.returning(this.x);
+	}
+
+	@Benchmark
+	public int returnIntercepted() {
+		return this.instrumented.returning(this.x);
+	}
+
+	@Benchmark
+	public int fieldGetBaseline() {
+		return this.baseline.getValue();
+	}
+
+	@Benchmark
+	public int fieldGetAccessor() {
+		return this.accessor.readValue();
+	}
+
+	@Benchmark
+	public void fieldSetBaseline() {
+		this.baseline.setValue(this.x);
+	}
+
+	@Benchmark
+	public void fieldSetAccessor() {
+		this.accessor.writeValue(this.x);
+	}
+
+	@Benchmark
+	public int methodCallBaseline() {
+		return this.baseline.compute(this.x);
+	}
+
+	@Benchmark
+	public int methodCallAccessor() {
+		return this.accessor.callCompute(this.x);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.include(RuntimeOverheadBenchmark.class.getName())
+				.addProfiler(GCProfiler.class);
+		if(Arrays.asList(args).contains("--inlining")) {
+			options.jvmArgsAppend("-XX:+UnlockDiagnosticVMOptions", "-XX:+PrintCompilation", "-XX:+PrintInlining");
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,46 @@
+package pr0x79.benchmark.runtime;
+
+/**
+ * The class whose instrumented methods are benchmarked, see {@link IRuntimeAccessor}
+ * and {@link IRuntimeLocalVarAccessor}. All methods have the same body so that the
+ * overhead of the different interceptors can be compared
+ */
+public class RuntimeTarget implements IRuntimeTarget {
+	private int value = 7;
+
+	@Override
+	public int intercepted(int x) {
+		return x * 31 + this.value;
+	}
+
+	@Override
+	public int localVar(int x) {
+		return x * 31 + this.value;
+	}
+
+	@Override
+	public int conditional(int x) {
+		x = x * 31 + this.value;
+		return x;
+	}
+
+	@Override
+	public int returning(int x) {
+		return x * 31 + this.value;
+	}
+
+	@Override
+	public int compute(int x) {
+		return x * 31 + this.value;
+	}
+
+	@Override
+	public int getValue() {
+		return this.value;
+	}
+
+	@Override
+	public void setValue(int value) {
+		this.value = value;
+	}
+}
@@ -0,0 +1,52 @@
+package pr0x79.benchmark.runtime;
+
+import java.io.IOException;
+
+import pr0x79.Bootstrapper;
+import pr0x79.benchmark.BenchmarkCorpus;
+
+/**
+ * Loads the {@link RuntimeTarget} and the {@link IRuntimeLocalVarAccessor} through the
+ * class transformer of the bootstrapper, like the java agent would. All other classes,
+ * including the {@link IRuntimeTarget} and the {@link IRuntimeAccessor}, are loaded by
+ * the parent class loader
+ */
+public class RuntimeTargetLoader extends ClassLoader {
+	private final Bootstrapper bootstrapper;
+
+	static {
+		registerAsParallelCapable();
+	}
+
+	public RuntimeTargetLoader(ClassLoader parent, Bootstrapper bootstrapper) {
+		super(parent);
+		this.bootstrapper = bootstrapper;
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if(!name.equals(RuntimeTarget.class.getName()) && !name.equals(IRuntimeLocalVarAccessor.class.getName())) {
+			return super.loadClass(name, resolve);
+		}
+		synchronized(this.getClassLoadingLock(name)) {
+			Class<?> cls = this.findLoadedClass(name);
+			if(cls == null) {
+				String className = name.replace('.', '/');
+				try {
+					byte[] bytes = BenchmarkCorpus.readClassFile(className);
+					byte[] transformed = this.bootstrapper.transform(this, className, bytes);
+					if(transformed != null) {
+						bytes = transformed;
+					}
+					cls = this.defineClass(name, bytes, 0, bytes.length);
+				} catch(IOException ex) {
+					throw new ClassNotFoundException(name, ex);
+				}
+			}
+			if(resolve) {
+				this.resolveClass(cls);
+			}
+			return cls;
+		}
+	}
+}
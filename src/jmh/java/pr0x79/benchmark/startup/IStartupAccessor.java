@@ -0,0 +1,14 @@
+package pr0x79.benchmark.startup;
+
+import pr0x79.instrumentation.accessor.ClassAccessor;
+import pr0x79.instrumentation.accessor.FieldAccessor;
+import pr0x79.instrumentation.accessor.IAccessor;
+
+/**
+ * Accessor of the matched classes of the startup workload
+ */
+@ClassAccessor(classIdentifier = StartupInstrumentor.MATCHED_CLASSES)
+public interface IStartupAccessor extends IAccessor {
+	@FieldAccessor(fieldIdentifier = StartupInstrumentor.VALUE_FIELD) public int getValue();
+	@FieldAccessor(fieldIdentifier = StartupInstrumentor.VALUE_FIELD) public void setValue(int value);
+}
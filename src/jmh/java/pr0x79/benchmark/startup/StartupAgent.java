@@ -0,0 +1,14 @@
+package pr0x79.benchmark.startup;
+
+import java.lang.instrument.Instrumentation;
+
+import pr0x79.Bootstrapper;
+
+/**
+ * Java agent of the startup workload
+ */
+public class StartupAgent {
+	public static void premain(String args, Instrumentation inst) {
+		Bootstrapper.initialize(new String[] { "pr0x79.benchmark.startup.StartupInstrumentor" }, inst);
+	}
+}
@@ -0,0 +1,313 @@
+package pr0x79.benchmark.startup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import pr0x79.Bootstrapper;
+
+/**
+ * Measures the startup overhead of the java agent. Generates a jar of synthetic classes,
+ * then alternately launches child JVMs with and without the agent that load all classes
+ * and serve a first request, see {@link StartupWorkload}. The results of all runs and
+ * their medians are written as JSON.
+ * <p>
+ * The agent uses the {@link StartupInstrumentor}, which targets all generated classes in
+ * {@link #MATCHED_PREFIX}. The classes form inheritance chains of the configured depth.
+ * <pre>
+ * java -cp &lt;jmh class path&gt; pr0x79.benchmark.startup.StartupHarness [options]
+ *   --classes &lt;n&gt;    number of generated classes (5000)
+ *   --depth &lt;n&gt;      depth of the class hierarchies (4)
+ *   --matched &lt;f&gt;    share of the classes that are targeted by the accessor (0.1)
+ *   --methods &lt;n&gt;    number of methods of each class (4)
+ *   --runs &lt;n&gt;       number of child JVMs with and without the agent (5)
+ *   --dir &lt;path&gt;     working directory of the generated jars (startup-benchmark)
+ *   --out &lt;path&gt;     JSON result file, printed if not specified
+ * </pre>
+ * Time to main and time to first request are measured by the harness from the launch of the
+ * child JVM to the arrival of the markers on its standard output. The class load time is the
+ * time the child spent loading and initializing the generated classes, including their transformation
+ */
+public class StartupHarness {
+	public static final String MATCHED_PREFIX = "bench/startup/matched/";
+	public static final String UNMATCHED_PREFIX = "bench/startup/unmatched/";
+	public static final String CLASS_INDEX = "bench/startup/classes.txt";
+	public static final String MAIN_MARKER = "startup-main";
+	public static final String READY_MARKER = "startup-ready";
+
+	private final Map<String, String> options = new HashMap<>();
+
+	/**
+	 * The measurements of a single child JVM
+	 */
+	private static class Run {
+		private final boolean agent;
+		private final int index;
+		private double timeToMainMillis, timeToFirstRequestMillis, classLoadMillis, totalMillis;
+		private long loadedClasses;
+
+		private Run(boolean agent, int index) {
+			this.agent = agent;
+			this.index = index;
+		}
+	}
+
+	private StartupHarness(String[] args) {
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			if(!args[i].startsWith("--")) {
+				throw new IllegalArgumentException(String.format("Invalid option %s", args[i]));
+			}
+			this.options.put(args[i].substring(2), args[i + 1]);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		new StartupHarness(args).run();
+	}
+
+	private int getInt(String option, int defaultValue) {
+		return this.options.containsKey(option) ? Integer.parseInt(this.options.get(option)) : defaultValue;
+	}
+
+	private void run() throws IOException, InterruptedException {
+		int classes = this.getInt("classes", 5000);
+		int depth = this.getInt("depth", 4);
+		int methods = this.getInt("methods", 4);
+		int runs = this.getInt("runs", 5);
+		double matched = Double.parseDouble(this.options.getOrDefault("matched", "0.1"));
+		Path dir = Paths.get(this.options.getOrDefault("dir", "startup-benchmark"));
+		Files.createDirectories(dir);
+
+		Path workloadJar = dir.resolve("workload.jar");
+		writeWorkloadJar(workloadJar, classes, depth, methods, matched);
+		Path agentJar = dir.resolve("agent.jar");
+		writeAgentJar(agentJar);
+
+		List<Run> results = new ArrayList<>();
+		for(int i = 0; i < runs; i++) {
+			//Alternating runs spread disturbances, e.g. by other processes, over both configurations
+			results.add(this.launch(workloadJar, null, i));
+			results.add(this.launch(workloadJar, agentJar, i));
+		}
+
+		String json = toJson(classes, depth, methods, matched, results);
+		if(this.options.containsKey("out")) {
+			Files.write(Paths.get(this.options.get("out")), json.getBytes(StandardCharsets.UTF_8));
+		} else {
+			System.out.println(json);
+		}
+	}
+
+	/**
+	 * Launches a child JVM and measures its startup
+	 * @param workloadJar
+	 * @param agentJar The agent jar, or null to launch the child without the agent
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private Run launch(Path workloadJar, Path agentJar, int index) throws IOException, InterruptedException {
+		Run run = new Run(agentJar != null, index);
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		if(agentJar != null) {
+			command.add("-javaagent:" + agentJar.toAbsolutePath());
+		}
+		command.add("-cp");
+		command.add(workloadJar.toAbsolutePath() + File.pathSeparator + System.getProperty("java.class.path"));
+		command.add(StartupWorkload.class.getName());
+
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				long now = System.nanoTime();
+				if(line.equals(MAIN_MARKER)) {
+					run.timeToMainMillis = (now - start) / 1e6D;
+				} else if(line.startsWith(READY_MARKER)) {
+					String[] values = line.split(" ");
+					run.timeToFirstRequestMillis = (now - start) / 1e6D;
+					run.classLoadMillis = Long.parseLong(values[1]) / 1e6D;
+					run.loadedClasses = Long.parseLong(values[2]);
+				} else {
+					System.err.println(line);
+				}
+			}
+		}
+		int exitCode = process.waitFor();
+		run.totalMillis = (System.nanoTime() - start) / 1e6D;
+		if(exitCode != 0 || run.timeToFirstRequestMillis == 0) {
+			throw new IOException(String.format("Child JVM failed with exit code %d: %s", exitCode, command));
+		}
+		return run;
+	}
+
+	/**
+	 * Generates the workload jar. The class hierarchies are chains of the specified depth, the
+	 * matched classes are spread evenly over all classes
+	 * @param jar
+	 * @param classes
+	 * @param depth
+	 * @param methods
+	 * @param matched
+	 * @throws IOException
+	 */
+	private static void writeWorkloadJar(Path jar, int classes, int depth, int methods, double matched) throws IOException {
+		String[] names = new String[classes];
+		for(int i = 0; i < classes; i++) {
+			boolean isMatched = Math.floor((i + 1) * matched) > Math.floor(i * matched);
+			names[i] = (isMatched ? MATCHED_PREFIX : UNMATCHED_PREFIX) + "C" + i;
+		}
+		try(OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out)) {
+			StringBuilder index = new StringBuilder();
+			for(int i = 0; i < classes; i++) {
+				String superName = i % depth == 0 ? "java/lang/Object" : names[i - 1];
+				jarOut.putNextEntry(new JarEntry(names[i] + ".class"));
+				jarOut.write(createClass(names[i], superName, i, methods));
+				jarOut.closeEntry();
+				index.append(names[i]).append('\n');
+			}
+			jarOut.putNextEntry(new JarEntry(CLASS_INDEX));
+			jarOut.write(index.toString().getBytes(StandardCharsets.UTF_8));
+			jarOut.closeEntry();
+		}
+	}
+
+	/**
+	 * Creates a class with a value field, a no-args constructor, the specified number of methods
+	 * and a run method that calls all methods
+	 * @param name
+	 * @param superName
+	 * @param value
+	 * @param methods
+	 * @return
+	 */
+	private static byte[] createClass(String name, String superName, int value, int methods) {
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, null);
+		cw.visitField(Opcodes.ACC_PUBLIC, "value", "I", null, null).visitEnd();
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitLdcInsn(value);
+		mv.visitFieldInsn(Opcodes.PUTFIELD, name, "value", "I");
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		for(int i = 0; i < methods; i++) {
+			mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m" + i, "()I", null, null);
+			mv.visitCode();
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitFieldInsn(Opcodes.GETFIELD, name, "value", "I");
+			mv.visitLdcInsn(i);
+			mv.visitInsn(Opcodes.IADD);
+			mv.visitInsn(Opcodes.IRETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "run", "()I", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, name, "value", "I");
+		for(int i = 0; i < methods; i++) {
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, name, "m" + i, "()I", false);
+			mv.visitInsn(Opcodes.IADD);
+		}
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Writes the agent jar. The agent classes are loaded from the class path of the child JVM
+	 * @param jar
+	 * @throws IOException
+	 */
+	private static void writeAgentJar(Path jar) throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(new Attributes.Name("Premain-Class"), StartupAgent.class.getName());
+		try(OutputStream out = Files.newOutputStream(jar); JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+			//The manifest is the only entry
+		}
+	}
+
+	private static String toJson(int classes, int depth, int methods, double matched, List<Run> results) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append(String.format(Locale.ROOT, "  \"classes\": %d,\n  \"depth\": %d,\n  \"methods\": %d,\n  \"matched\": %s,\n", classes, depth, methods, matched));
+		json.append(String.format("  \"java\": \"%s\",\n  \"bootstrapper\": \"%s\",\n", System.getProperty("java.version"), Bootstrapper.class.getName()));
+		json.append("  \"runs\": [\n");
+		for(int i = 0; i < results.size(); i++) {
+			Run run = results.get(i);
+			json.append(String.format(Locale.ROOT, "    { \"agent\": %b, \"run\": %d, \"timeToMainMillis\": %.3f, \"timeToFirstRequestMillis\": %.3f, \"classLoadMillis\": %.3f, \"totalMillis\": %.3f, \"loadedClasses\": %d }%s\n",
+					run.agent, run.index, run.timeToMainMillis, run.timeToFirstRequestMillis, run.classLoadMillis, run.totalMillis, run.loadedClasses, i == results.size() - 1 ? "" : ","));
+		}
+		json.append("  ],\n");
+		json.append("  \"median\": {\n");
+		json.append("    \"baseline\": ").append(medianJson(results, false)).append(",\n");
+		json.append("    \"agent\": ").append(medianJson(results, true)).append('\n');
+		json.append("  }\n");
+		json.append("}\n");
+		return json.toString();
+	}
+
+	private static String medianJson(List<Run> results, boolean agent) {
+		List<Run> runs = new ArrayList<>();
+		for(Run run : results) {
+			if(run.agent == agent) {
+				runs.add(run);
+			}
+		}
+		double[] timeToMain = new double[runs.size()], timeToFirstRequest = new double[runs.size()], classLoad = new double[runs.size()], total = new double[runs.size()];
+		for(int i = 0; i < runs.size(); i++) {
+			timeToMain[i] = runs.get(i).timeToMainMillis;
+			timeToFirstRequest[i] = runs.get(i).timeToFirstRequestMillis;
+			classLoad[i] = runs.get(i).classLoadMillis;
+			total[i] = runs.get(i).totalMillis;
+		}
+		return String.format(Locale.ROOT, "{ \"timeToMainMillis\": %.3f, \"timeToFirstRequestMillis\": %.3f, \"classLoadMillis\": %.3f, \"totalMillis\": %.3f }",
+				median(timeToMain), median(timeToFirstRequest), median(classLoad), median(total));
+	}
+
+	private static double median(double[] values) {
+		if(values.length == 0) {
+			return 0;
+		}
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int middle = sorted.length / 2;
+		return sorted.length % 2 == 0 ? (sorted[middle - 1] + sorted[middle]) / 2 : sorted[middle];
+	}
+}
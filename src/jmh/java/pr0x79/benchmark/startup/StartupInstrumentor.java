@@ -0,0 +1,60 @@
+package pr0x79.benchmark.startup;
+
+import pr0x79.Bootstrapper;
+import pr0x79.IInstrumentor;
+import pr0x79.instrumentation.identification.IClassIdentifier;
+import pr0x79.instrumentation.identification.IFieldIdentifier;
+
+/**
+ * Instrumentor of the startup workload, the {@link IStartupAccessor} targets all
+ * generated classes whose names start with {@link StartupHarness#MATCHED_PREFIX}
+ */
+public class StartupInstrumentor implements IInstrumentor {
+	public static final String MATCHED_CLASSES = "startup_matched";
+	public static final String VALUE_FIELD = "startup_value";
+
+	@Override
+	public void initBootstrapper(Bootstrapper bootstrapper) {
+		//The accessors are in a package of the agent, which is excluded by default
+		bootstrapper.getClassFilter().includePackage("pr0x79/benchmark/startup/");
+		bootstrapper.getIdentifiers().registerClassIdentifier(MATCHED_CLASSES, new IClassIdentifier() {
+			@Override
+			public boolean isIdentifiedClass(String cls) {
+				return cls.startsWith(StartupHarness.MATCHED_PREFIX);
+			}
+
+			@Override
+			public String[] getCandidatePrefixes() {
+				return new String[] { StartupHarness.MATCHED_PREFIX };
+			}
+
+			@Override
+			public String getFingerprint() {
+				return StartupHarness.MATCHED_PREFIX;
+			}
+
+			@Override
+			public boolean isStatic() {
+				return false;
+			}
+		});
+		bootstrapper.getIdentifiers().registerFieldIdentifier(VALUE_FIELD, new IFieldIdentifier() {
+			@Override
+			public FieldDescription[] getFields() {
+				return new FieldDescription[] { new FieldDescription("value", "I") };
+			}
+
+			@Override
+			public boolean isStatic() {
+				return true;
+			}
+		});
+		bootstrapper.getAccessors().registerAccessor("pr0x79.benchmark.startup.IStartupAccessor");
+	}
+
+	@Override
+	public void onBootstrapperException(Exception ex) {
+		ex.printStackTrace();
+		System.exit(-1);
+	}
+}
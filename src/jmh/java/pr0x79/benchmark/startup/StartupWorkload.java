@@ -0,0 +1,47 @@
+package pr0x79.benchmark.startup;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Main class of the child JVMs. Loads and initializes all generated classes in the order
+ * of the class index and then serves the first request, i.e. calls a method of each class.
+ * Reports its progress to the {@link StartupHarness} on the standard output
+ */
+public class StartupWorkload {
+	public static void main(String[] args) throws Exception {
+		System.out.println(StartupHarness.MAIN_MARKER);
+		System.out.flush();
+
+		ClassLoader loader = StartupWorkload.class.getClassLoader();
+		List<String> classNames = new ArrayList<>();
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(loader.getResourceAsStream(StartupHarness.CLASS_INDEX), StandardCharsets.UTF_8))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				classNames.add(line.replace('/', '.'));
+			}
+		}
+
+		long start = System.nanoTime();
+		List<Class<?>> classes = new ArrayList<>(classNames.size());
+		for(String className : classNames) {
+			classes.add(Class.forName(className, true, loader));
+		}
+		long loadNanos = System.nanoTime() - start;
+
+		long result = 0;
+		for(Class<?> cls : classes) {
+			Object instance = cls.getDeclaredConstructor().newInstance();
+			Method run = cls.getMethod("run");
+			result += (Integer) run.invoke(instance);
+		}
+
+		System.out.println(String.format("%s %d %d %d", StartupHarness.READY_MARKER, loadNanos, ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount(), result));
+		System.out.flush();
+	}
+}
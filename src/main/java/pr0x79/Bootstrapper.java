@@ -3,48 +3,94 @@ package pr0x79;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 
 import pr0x79.instrumentation.BytecodeInstrumentation;
+import pr0x79.instrumentation.ClassFilter;
+import pr0x79.instrumentation.ClassHeaderReader;
+import pr0x79.instrumentation.ClassNodeMerger;
+import pr0x79.instrumentation.ConstantPoolScanner;
 import pr0x79.instrumentation.InstrumentationClassWriter;
+import pr0x79.instrumentation.InstrumentationFingerprint;
+import pr0x79.instrumentation.InstrumentationPlan;
+import pr0x79.instrumentation.PersistentClassCache;
+import pr0x79.instrumentation.SharedClassCache;
+import pr0x79.instrumentation.TypeHierarchyCache.TypeHeader;
+import pr0x79.instrumentation.WeakLoaderMap;
+import pr0x79.instrumentation.WovenAttribute;
 import pr0x79.instrumentation.accessor.Accessors;
 import pr0x79.instrumentation.accessor.ClassAccessor;
 import pr0x79.instrumentation.accessor.ClassAccessorData;
 import pr0x79.instrumentation.accessor.IAccessor;
 import pr0x79.instrumentation.exception.InstrumentorException;
 import pr0x79.instrumentation.identification.Identifiers;
+import pr0x79.metrics.FlightRecorderSupport;
+import pr0x79.metrics.IAcceptClassEvent;
+import pr0x79.metrics.IClassEvent;
+import pr0x79.metrics.IClassWriteEvent;
+import pr0x79.metrics.TransformerMetrics;
 
 public class Bootstrapper {
 	private static final Bootstrapper INSTANCE = new Bootstrapper();
 
+	//Descriptor of the class accessor annotation as it appears in the constant pool of accessor classes
+	private static final byte[] CLASS_ACCESSOR_DESC = Type.getDescriptor(ClassAccessor.class).getBytes(StandardCharsets.UTF_8);
+
 	private final Identifiers identifiers;
 	private final Accessors accessors;
 	private final BytecodeInstrumentation instrumentor;
+	private final ClassFilter classFilter;
+	private volatile SharedClassCache sharedClassCache = new SharedClassCache();
+	private final TransformerMetrics metrics = new TransformerMetrics();
+
+	//Contains all accessor classes that were loaded through the class transformer, the sets are immutable
+	private final WeakLoaderMap<Set<String>> internallyLoadedAccessorClasses = new WeakLoaderMap<>();
 
-	//Contains all accessor classes that were loaded through the class transformer
-	private final Map<ClassLoader, Set<String>> internallyLoadedAccessorClasses = new WeakHashMap<ClassLoader, Set<String>>();
+	/**
+	 * The lifecycle of the bootstrapper. Identifiers, accessors and settings can
+	 * only be registered until the bootstrapper is initialized
+	 */
+	private static enum Lifecycle {
+		CREATED,
+		INITIALIZING,
+		INITIALIZED
+	}
+
+	private final AtomicReference<Lifecycle> lifecycle = new AtomicReference<>(Lifecycle.CREATED);
 
 	private Set<IInstrumentor> instrumentors;
-	private boolean initializing = true;
+
+	private Path classCacheDirectory;
+	private volatile PersistentClassCache classCache;
+
+	//Computed when it is first needed, empty if any identifier can not be fingerprinted
+	private volatile byte[] fingerprint;
 
 	private Bootstrapper() {
 		this.identifiers = new Identifiers(this);
 		this.instrumentor = new BytecodeInstrumentation();
 		this.accessors = new Accessors(this, this.identifiers, this.instrumentor);
 		this.instrumentor.setAccessors(this.accessors);
+		this.classFilter = new ClassFilter(this);
 	}
 
 	/**
@@ -53,7 +99,7 @@ public class Bootstrapper {
 	 * @param inst The bytecode instrumentation
 	 */
 	public static void initialize(String[] instrumentorClasses, Instrumentation inst) {
-		if(!INSTANCE.isInitializing()) {
+		if(!INSTANCE.lifecycle.compareAndSet(Lifecycle.CREATED, Lifecycle.INITIALIZING)) {
 			throw new RuntimeException("Bootstrapper can only be initialized once");
 		}
 		INSTANCE.init(instrumentorClasses, inst);
@@ -65,12 +111,22 @@ public class Bootstrapper {
 	 * @param className
 	 */
 	private void addInternallyLoadedAccessor(ClassLoader loader, String className) {
-		synchronized(this.internallyLoadedAccessorClasses) {
+		while(true) {
 			Set<String> classes = this.internallyLoadedAccessorClasses.get(loader);
-			if (classes == null) {
-				this.internallyLoadedAccessorClasses.put(loader, classes = new HashSet<String>());
+			if(classes == null) {
+				if(this.internallyLoadedAccessorClasses.putIfAbsent(loader, Collections.singleton(className)) == null) {
+					return;
+				}
+			} else {
+				if(classes.contains(className)) {
+					return;
+				}
+				Set<String> updated = new HashSet<>(classes);
+				updated.add(className);
+				if(this.internallyLoadedAccessorClasses.replace(loader, classes, Collections.unmodifiableSet(updated))) {
+					return;
+				}
 			}
-			classes.add(className);
 		}
 	}
 
@@ -82,11 +138,9 @@ public class Bootstrapper {
 	 */
 	public boolean wasAccessorLoadedInternally(ClassLoader loader, String className) {
 		while(loader != null) {
-			synchronized(this.internallyLoadedAccessorClasses) {
-				Set<String> classes = this.internallyLoadedAccessorClasses.get(loader);
-				if (classes != null && classes.contains(className)) {
-					return true;
-				}
+			Set<String> classes = this.internallyLoadedAccessorClasses.get(loader);
+			if(classes != null && classes.contains(className)) {
+				return true;
 			}
 			loader = loader.getParent();
 		}
@@ -106,32 +160,7 @@ public class Bootstrapper {
 			@Override
 			public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDoman, byte[] bytes) throws IllegalClassFormatException {
 				try {
-					boolean modified = false;
-
-					ClassReader classReader = new ClassReader(bytes);
-					ClassNode clsNode = new ClassNode();
-					classReader.accept(clsNode, ClassReader.SKIP_FRAMES);
-
-					String classIdentifier = BytecodeInstrumentation.getAnnotationValue(clsNode.visibleAnnotations, ClassAccessor.class, ClassAccessor.CLASS_IDENTIFIER, String.class, null);
-
-					if(classIdentifier != null) {
-						addInternallyLoadedAccessor(loader, className.replace("/", "."));
-
-						if(instrumentor.instrumentAccessorClass(clsNode, Bootstrapper.this)) {
-							modified = true;
-						}
-					}
-
-					if(className != null && instrumentor.acceptsClass(className)) {
-						instrumentor.instrumentClass(clsNode);
-						modified = true;
-					}
-
-					if(modified) {
-						ClassWriter classWriter = new InstrumentationClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
-						clsNode.accept(classWriter);
-						return classWriter.toByteArray();
-					}
+					return Bootstrapper.this.transform(loader, className, protectionDoman, bytes);
 				} catch(Exception ex) {
 					if(!isInitializing()) {
 						onBootstrapperException(ex);
@@ -142,10 +171,325 @@ public class Bootstrapper {
 					}
 				}
 
-				return bytes;
+				return null;
 			}
 		});
 
+		this.registerInstrumentors(instrumentorClasses, bootstrapperInitExceptions);
+
+		for(ClassAccessorData accessor : this.accessors.getClassAccessors()) {
+			if(this.wasAccessorLoadedInternally(Bootstrapper.class.getClassLoader(), accessor.getAccessorClass())) {
+				throw new InstrumentorException(String.format("Accessor class %s was already loaded before or during the bootstrapper initialization!", accessor.getAccessorClass()));
+			}
+		}
+
+		for(ClassAccessorData accessor : this.accessors.getClassAccessors()) {
+			try {
+				@SuppressWarnings("unchecked")
+				Class<IAccessor> accessorCls = (Class<IAccessor>) Bootstrapper.class.getClassLoader().loadClass(accessor.getAccessorClass());
+
+				if(!this.wasAccessorLoadedInternally(Bootstrapper.class.getClassLoader(), accessorCls.getName())) {
+					throw new InstrumentorException(String.format("Accessor class %s could not be loaded properly!", accessorCls.getName()));
+				}
+			} catch (ClassNotFoundException e) {
+				bootstrapperInitExceptions.add(e);
+			}
+		}
+
+		this.finishInit(bootstrapperInitExceptions);
+
+		//Starting the platform MBean server loads and initializes many classes, so it is kept out of the agent premain
+		Thread metricsRegistration = new Thread(() -> {
+			try {
+				this.metrics.register();
+			} catch(JMException ex) {
+				this.onBootstrapperException(ex);
+			}
+		}, "pr0x79 Metrics Registration");
+		metricsRegistration.setDaemon(true);
+		metricsRegistration.start();
+	}
+
+	/**
+	 * Transforms the specified class like the class transformer of the java agent, without
+	 * a protection domain
+	 * @param loader The class loader that defines the class, null for the bootstrap class loader
+	 * @param className The internal name of the class
+	 * @param bytes The class file
+	 * @return The transformed class file, or null if the class was not modified
+	 * @throws IOException if the class cache cannot be read
+	 * @see #transform(ClassLoader, String, ProtectionDomain, byte[])
+	 */
+	public byte[] transform(ClassLoader loader, String className, byte[] bytes) throws IOException {
+		return this.transform(loader, className, null, bytes);
+	}
+
+	/**
+	 * Transforms the specified class like the class transformer of the java agent.
+	 * Classes rejected by the {@link ClassFilter} are left untouched, accessor classes are
+	 * registered as internally loaded, target classes are instrumented. The code source rules
+	 * of the filter don't apply to accessor classes
+	 * @param loader The class loader that defines the class, null for the bootstrap class loader
+	 * @param className The internal name of the class
+	 * @param domain The protection domain of the class, can be null
+	 * @param bytes The class file
+	 * @return The transformed class file, or null if the class was not modified
+	 * @throws IOException if the class cache cannot be read
+	 */
+	public byte[] transform(ClassLoader loader, String className, ProtectionDomain domain, byte[] bytes) throws IOException {
+		this.metrics.onClassSeen();
+
+		if(!this.classFilter.acceptsLoaderAndPackage(loader, className)) {
+			this.metrics.onClassPreFiltered();
+			return null;
+		}
+
+		//The events are only created if the flight recorder is available on the runtime
+		IAcceptClassEvent acceptEvent = FlightRecorderSupport.newAcceptClassEvent();
+		if(acceptEvent != null) {
+			acceptEvent.begin();
+		}
+
+		boolean isAccessorCandidate = ConstantPoolScanner.containsUtf8(bytes, CLASS_ACCESSOR_DESC);
+		boolean isCodeSourceAccepted = this.classFilter.acceptsCodeSource(domain);
+		//Accessor classes may be loaded from code sources that are not instrumented, e.g. the agent jar
+		if(!isAccessorCandidate && !isCodeSourceAccepted) {
+			this.metrics.onClassPreFiltered();
+			return null;
+		}
+		boolean isTargetCandidate = isCodeSourceAccepted && className != null && this.instrumentor.acceptsClass(className);
+
+		if(isTargetCandidate) {
+			byte[] wovenFingerprint = WovenAttribute.readFingerprint(bytes);
+			if(wovenFingerprint != null) {
+				//Class was woven ahead of time and already contains its instrumentation
+				isTargetCandidate = false;
+				this.checkWovenFingerprint(className, wovenFingerprint);
+			}
+		}
+
+		if(acceptEvent != null && acceptEvent.shouldCommit()) {
+			acceptEvent.setClass(className, loader, bytes.length);
+			acceptEvent.setDecision(isAccessorCandidate, isTargetCandidate);
+			acceptEvent.commit();
+		}
+
+		if(!isAccessorCandidate && !isTargetCandidate) {
+			//Class is neither an accessor nor instrumented, leave it untouched without parsing it
+			this.metrics.onClassPreFiltered();
+			return null;
+		}
+
+		if(isAccessorCandidate) {
+			//Accessor classes are registered for each class loader, so they are not shared
+			return this.transformClass(loader, className, bytes, true, isTargetCandidate, null);
+		}
+
+		SharedClassCache sharedClassCache = this.sharedClassCache;
+		if(sharedClassCache == null) {
+			return this.transformClass(loader, className, bytes, false, true, null);
+		}
+
+		//Identical target classes are instrumented identically unless their hierarchy is resolved, so the first class loader shares its result
+		SharedClassCache.Flight flight = sharedClassCache.join(loader, className, bytes);
+		byte[] shared = flight.await();
+		if(shared != null) {
+			//The class may be part of the hierarchy that is resolved when the frames are computed
+			this.instrumentor.getTypeHierarchyCache().putHeader(loader, ClassHeaderReader.read(shared));
+			this.metrics.onClassCached();
+			return shared;
+		}
+		try {
+			return this.transformClass(loader, className, bytes, false, true, flight);
+		} finally {
+			//The waiting class loaders transform the class themselves if it was not shared
+			flight.fail();
+		}
+	}
+
+	/**
+	 * Reports a class that was woven ahead of time with a different instrumentation than the
+	 * current one. The class can not be instrumented again because the original class file
+	 * is not available. Classes loaded during the initialization phase are not checked
+	 * because the fingerprint is only complete once all identifiers and accessors are registered
+	 * @param className The internal name of the class
+	 * @param wovenFingerprint The {@link InstrumentationFingerprint} the class was woven with
+	 * @throws IOException if an accessor class file cannot be read
+	 */
+	private void checkWovenFingerprint(String className, byte[] wovenFingerprint) throws IOException {
+		if(this.isInitializing()) {
+			return;
+		}
+		byte[] fingerprint = this.getFingerprint();
+		//Classes can only be compared if both instrumentations could be fingerprinted
+		if(wovenFingerprint.length != 0 && fingerprint.length != 0 && !Arrays.equals(wovenFingerprint, fingerprint)) {
+			this.onBootstrapperException(new InstrumentorException(String.format("Class %s was woven with a different instrumentation (%s) than the current one (%s), weave it again", className, InstrumentationFingerprint.toHex(wovenFingerprint), InstrumentationFingerprint.toHex(fingerprint))));
+		}
+	}
+
+	/**
+	 * Returns the {@link InstrumentationFingerprint} of the registered identifiers and accessors.
+	 * Must only be called once the identifiers and accessors are frozen
+	 * @return The fingerprint, empty if any identifier can not be fingerprinted
+	 * @throws IOException if an accessor class file cannot be read
+	 */
+	private byte[] getFingerprint() throws IOException {
+		byte[] fingerprint = this.fingerprint;
+		if(fingerprint == null) {
+			//Computing the fingerprint twice in parallel yields the same result
+			fingerprint = InstrumentationFingerprint.compute(this.identifiers, this.accessors);
+			this.fingerprint = fingerprint = fingerprint != null ? fingerprint : new byte[0];
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Instruments the specified accessor or target class, or reads it from the persistent class cache.
+	 * Only classes whose instrumentation doesn't depend on the class loader are added to the class cache
+	 * @param loader The class loader that defines the class, null for the bootstrap class loader
+	 * @param className The internal name of the class
+	 * @param bytes The class file
+	 * @param isAccessorCandidate Whether the class may be an accessor
+	 * @param isTargetCandidate Whether the class is targeted by any accessor
+	 * @param flight The transformation shared with other class loaders, can be null. The instrumented class
+	 * is only shared if it does not depend on the class hierarchy seen by the class loader
+	 * @return The transformed class file, or null if the class was not modified
+	 * @throws IOException if the class cache cannot be read
+	 */
+	private byte[] transformClass(ClassLoader loader, String className, byte[] bytes, boolean isAccessorCandidate, boolean isTargetCandidate, SharedClassCache.Flight flight) throws IOException {
+		PersistentClassCache classCache = this.classCache;
+		byte[] cacheKey = null;
+		if(classCache != null && !isAccessorCandidate) {
+			cacheKey = classCache.getKey(bytes);
+			byte[] cached = classCache.get(cacheKey);
+			if(cached != null) {
+				//The class may be part of the hierarchy that is resolved when the frames are computed
+				this.instrumentor.getTypeHierarchyCache().putHeader(loader, ClassHeaderReader.read(cached));
+				this.metrics.onClassCached();
+				return cached;
+			}
+		}
+
+		boolean modified = false;
+		boolean isLoaderIndependent = false;
+
+		IClassEvent parseEvent = FlightRecorderSupport.newClassParseEvent();
+		if(parseEvent != null) {
+			parseEvent.begin();
+		}
+		long start = System.nanoTime();
+		ClassReader classReader = new ClassReader(bytes);
+		ClassNodeMerger merger = ClassNodeMerger.read(classReader);
+		ClassNode clsNode = merger.getClassNode();
+		long end = System.nanoTime();
+		this.metrics.onClassParsed(end - start);
+		if(parseEvent != null && parseEvent.shouldCommit()) {
+			parseEvent.setClass(className, loader, bytes.length);
+			parseEvent.commit();
+		}
+
+		String classIdentifier = BytecodeInstrumentation.getAnnotationValue(clsNode.visibleAnnotations, ClassAccessor.class, ClassAccessor.CLASS_IDENTIFIER, String.class, null);
+
+		if(classIdentifier != null) {
+			this.addInternallyLoadedAccessor(loader, className.replace("/", "."));
+
+			start = System.nanoTime();
+			if(this.instrumentor.instrumentAccessorClass(clsNode, this)) {
+				modified = true;
+			}
+			this.metrics.onClassInstrumented(System.nanoTime() - start);
+		}
+
+		if(isTargetCandidate) {
+			IClassEvent instrumentEvent = FlightRecorderSupport.newInstrumentClassEvent();
+			if(instrumentEvent != null) {
+				instrumentEvent.begin();
+			}
+			start = System.nanoTime();
+			InstrumentationPlan plan = this.instrumentor.planClass(clsNode, loader);
+			isLoaderIndependent = plan.isLoaderIndependent();
+			end = System.nanoTime();
+			this.metrics.onClassIdentified(end - start);
+
+			this.instrumentor.applyPlan(clsNode, plan);
+			this.metrics.onClassInstrumented(System.nanoTime() - end);
+			if(instrumentEvent != null && instrumentEvent.shouldCommit()) {
+				instrumentEvent.setClass(className, loader, bytes.length);
+				instrumentEvent.commit();
+			}
+			modified = true;
+		}
+
+		if(modified) {
+			//The class may be part of the hierarchy that is resolved when the frames are computed
+			this.instrumentor.getTypeHierarchyCache().putHeader(loader, new TypeHeader(clsNode.access, clsNode.name, clsNode.superName, clsNode.interfaces.toArray(new String[0])));
+
+			IClassWriteEvent writeEvent = FlightRecorderSupport.newClassWriteEvent();
+			if(writeEvent != null) {
+				writeEvent.begin();
+			}
+			start = System.nanoTime();
+
+			//Unmodified methods are copied from the class reader as they are. Frames are only
+			//computed if the control flow was changed, straight line insertions keep the original frames
+			boolean computeFrames = merger.requiresFrameComputation();
+			int flags = computeFrames ? ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS : ClassWriter.COMPUTE_MAXS;
+			ClassWriter classWriter = new InstrumentationClassWriter(classReader, flags, this.instrumentor.getTypeHierarchyCache(), loader);
+			merger.merge(classReader, classWriter);
+			byte[] instrumented = classWriter.toByteArray();
+			this.metrics.onClassWritten(System.nanoTime() - start);
+			if(writeEvent != null && writeEvent.shouldCommit()) {
+				writeEvent.setClass(className, loader, bytes.length);
+				writeEvent.setResult(instrumented.length, computeFrames);
+				writeEvent.commit();
+			}
+
+			//Computed frames depend on the common super classes seen by the class loader, the plan
+			//depends on it if any type check was resolved. Such classes are neither shared nor persisted
+			boolean isReusable = isLoaderIndependent && !computeFrames;
+
+			if(flight != null && isReusable) {
+				flight.complete(instrumented);
+			}
+
+			if(cacheKey != null && isReusable) {
+				try {
+					classCache.put(cacheKey, instrumented);
+				} catch(IOException ex) {
+					//The class is still instrumented if it cannot be cached
+					this.onBootstrapperException(ex);
+				}
+			}
+
+			return instrumented;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Initializes the bootstrapper without a java agent, e.g. to weave classes ahead of time
+	 * or to benchmark the instrumentation. No transformer is registered, so accessor classes
+	 * are neither loaded nor instrumented. Classes can be transformed with {@link #transform(ClassLoader, String, byte[])}
+	 * @param instrumentorClasses The instrumentor class names
+	 * @return
+	 */
+	public static Bootstrapper initializeOffline(String[] instrumentorClasses) {
+		if(!INSTANCE.lifecycle.compareAndSet(Lifecycle.CREATED, Lifecycle.INITIALIZING)) {
+			throw new RuntimeException("Bootstrapper can only be initialized once");
+		}
+		List<Exception> bootstrapperInitExceptions = Collections.synchronizedList(new ArrayList<>());
+		INSTANCE.registerInstrumentors(instrumentorClasses, bootstrapperInitExceptions);
+		INSTANCE.finishInit(bootstrapperInitExceptions);
+		return INSTANCE;
+	}
+
+	/**
+	 * Creates the instrumentors and lets them register their identifiers and accessors
+	 * @param instrumentorClasses The instrumentor class names
+	 * @param bootstrapperInitExceptions
+	 */
+	private void registerInstrumentors(String[] instrumentorClasses, List<Exception> bootstrapperInitExceptions) {
 		List<IInstrumentor> instrumentorInstances = new ArrayList<>();
 		for(String instrumentorClass : instrumentorClasses) {
 			IInstrumentor instrumentor = null;
@@ -170,29 +514,31 @@ public class Bootstrapper {
 				bootstrapperInitExceptions.add(ex);
 			}
 		}
+	}
 
-		for(ClassAccessorData accessor : this.accessors.getClassAccessors()) {
-			if(this.wasAccessorLoadedInternally(Bootstrapper.class.getClassLoader(), accessor.getAccessorClass())) {
-				throw new InstrumentorException(String.format("Accessor class %s was already loaded before or during the bootstrapper initialization!", accessor.getAccessorClass()));
-			}
-		}
+	/**
+	 * Freezes the registries, builds the accessor index, ends the initialization phase and notifies the instrumentors
+	 * @param bootstrapperInitExceptions The exceptions that occurred during the initialization
+	 */
+	private void finishInit(List<Exception> bootstrapperInitExceptions) {
+		//All identifiers and accessors are registered at this point
+		this.identifiers.freeze();
+		this.accessors.freeze();
+		this.instrumentor.buildIndex();
 
-		for(ClassAccessorData accessor : this.accessors.getClassAccessors()) {
+		if(this.classCacheDirectory != null) {
 			try {
-				@SuppressWarnings("unchecked")
-				Class<IAccessor> accessorCls = (Class<IAccessor>) Bootstrapper.class.getClassLoader().loadClass(accessor.getAccessorClass());
-
-				if(!this.wasAccessorLoadedInternally(Bootstrapper.class.getClassLoader(), accessorCls.getName())) {
-					throw new InstrumentorException(String.format("Accessor class %s could not be loaded properly!", accessorCls.getName()));
+				byte[] fingerprint = this.getFingerprint();
+				//Instrumented classes are not cached if any identifier can not be fingerprinted
+				if(fingerprint.length != 0) {
+					this.classCache = PersistentClassCache.open(this.classCacheDirectory, fingerprint);
 				}
-			} catch (ClassNotFoundException e) {
-				bootstrapperInitExceptions.add(e);
+			} catch(IOException ex) {
+				bootstrapperInitExceptions.add(ex);
 			}
 		}
 
-		synchronized(this) {
-			this.initializing = false;
-		}
+		this.lifecycle.set(Lifecycle.INITIALIZED);
 
 		synchronized(bootstrapperInitExceptions) {
 			for(Exception ex : bootstrapperInitExceptions) {
@@ -252,12 +598,63 @@ public class Bootstrapper {
 		return this.accessors;
 	}
 
+	/**
+	 * Returns the filter that decides which classes are seen by the class transformer.
+	 * Can only be changed during the initialization phase
+	 * @return
+	 */
+	public ClassFilter getClassFilter() {
+		return this.classFilter;
+	}
+
+	/**
+	 * Returns the metrics of the class transformer, also registered as platform
+	 * MBean {@value TransformerMetrics#OBJECT_NAME} in the background after the initialization
+	 * @return
+	 */
+	public TransformerMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Returns the bytecode instrumentation
+	 * @return
+	 */
+	public BytecodeInstrumentation getInstrumentor() {
+		return this.instrumentor;
+	}
+
+	/**
+	 * Enables the persistent cache of instrumented classes in the specified directory.
+	 * The cache can be shared by several JVMs and is only used if all identifiers can be
+	 * fingerprinted, see {@link InstrumentationFingerprint}.
+	 * Can only be called during the initialization phase
+	 * @param directory The cache directory
+	 */
+	public void setClassCacheDirectory(Path directory) {
+		if(!this.isInitializing()) {
+			throw new InstrumentorException("The class cache can only be enabled during the initialization phase");
+		}
+		this.classCacheDirectory = directory;
+	}
+
+	/**
+	 * Enables or disables the in memory cache that shares instrumented classes between class loaders,
+	 * see {@link SharedClassCache}. Enabled by default, disabling it discards all shared classes
+	 * @param enabled
+	 */
+	public synchronized void setSharedClassCacheEnabled(boolean enabled) {
+		if(enabled != (this.sharedClassCache != null)) {
+			this.sharedClassCache = enabled ? new SharedClassCache() : null;
+		}
+	}
+
 	/**
 	 * Returns whether the bootstrapper is in the initialization phase
 	 * @return
 	 */
-	public synchronized boolean isInitializing() {
-		return this.initializing;
+	public boolean isInitializing() {
+		return this.lifecycle.get() != Lifecycle.INITIALIZED;
 	}
 
 	/**
@@ -265,6 +662,7 @@ public class Bootstrapper {
 	 * @param ex
 	 */
 	protected void onBootstrapperException(Exception ex) {
+		this.metrics.onException();
 		for(IInstrumentor instrumentor : this.instrumentors) {
 			instrumentor.onBootstrapperException(ex);
 		}
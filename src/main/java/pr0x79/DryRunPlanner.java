@@ -0,0 +1,285 @@
+package pr0x79;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import pr0x79.instrumentation.BytecodeInstrumentation;
+import pr0x79.instrumentation.ClassNodeMerger;
+import pr0x79.instrumentation.InstrumentationPlan;
+import pr0x79.instrumentation.InstrumentationPlan.FieldAccessorTarget;
+import pr0x79.instrumentation.InstrumentationPlan.FieldGeneratorTarget;
+import pr0x79.instrumentation.InstrumentationPlan.InterceptorTarget;
+import pr0x79.instrumentation.InstrumentationPlan.MethodAccessorTarget;
+
+/**
+ * Plans the instrumentation of all classes of a class path without instrumenting them.
+ * The same {@link IInstrumentor}s as for the java agent are used, they and their mappings
+ * must be on the class path of the planner. All identifiers are evaluated exactly like
+ * at runtime, and the report lists for each targeted class the members and instructions each
+ * accessor and interceptor is bound to, the time spent identifying the class and planning it,
+ * and the identification errors. The classes are planned in parallel and no bytecode is emitted.
+ * <pre>
+ * java -cp &lt;planner and instrumentor class path&gt; pr0x79.DryRunPlanner &lt;class path&gt; &lt;instrumentor class&gt;...
+ * </pre>
+ */
+public class DryRunPlanner {
+	//Number of classes listed in the summary of the slowest classes
+	private static final int SLOWEST_CLASSES = 10;
+
+	private final BytecodeInstrumentation instrumentor;
+
+	/**
+	 * The plan of a single class
+	 */
+	public static class ClassReport {
+		private final String className;
+		private final long acceptNanos;
+		private final long planNanos;
+		private final List<String> targets;
+		private final Exception error;
+
+		private ClassReport(String className, long acceptNanos, long planNanos, List<String> targets, Exception error) {
+			this.className = className;
+			this.acceptNanos = acceptNanos;
+			this.planNanos = planNanos;
+			this.targets = targets;
+			this.error = error;
+		}
+
+		/**
+		 * Returns the internal name of the class
+		 * @return
+		 */
+		public String getClassName() {
+			return this.className;
+		}
+
+		/**
+		 * Returns the time spent deciding whether the class is targeted, in nanoseconds
+		 * @return
+		 */
+		public long getAcceptNanos() {
+			return this.acceptNanos;
+		}
+
+		/**
+		 * Returns the time spent parsing and planning the class, in nanoseconds.
+		 * Zero if the class is not targeted
+		 * @return
+		 */
+		public long getPlanNanos() {
+			return this.planNanos;
+		}
+
+		/**
+		 * Returns whether the class is targeted by any accessor or interceptor
+		 * @return
+		 */
+		public boolean isTargeted() {
+			return this.targets != null || this.error != null;
+		}
+
+		/**
+		 * Returns a description of each planned edit, null if the class is not targeted
+		 * or could not be planned
+		 * @return
+		 */
+		public List<String> getTargets() {
+			return this.targets;
+		}
+
+		/**
+		 * Returns the exception that occurred while planning the class, or null
+		 * @return
+		 */
+		public Exception getError() {
+			return this.error;
+		}
+	}
+
+	public DryRunPlanner(BytecodeInstrumentation instrumentor) {
+		this.instrumentor = instrumentor;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2) {
+			System.err.println("Usage: DryRunPlanner <class path> <instrumentor class>...");
+			System.exit(1);
+		}
+		Bootstrapper bootstrapper = Bootstrapper.initializeOffline(Arrays.copyOfRange(args, 1, args.length));
+		DryRunPlanner planner = new DryRunPlanner(bootstrapper.getInstrumentor());
+		List<Path> classPath = Arrays.stream(args[0].split(File.pathSeparator)).map(Paths::get).collect(Collectors.toList());
+		printReport(planner.plan(classPath, ForkJoinPool.commonPool()), System.out);
+	}
+
+	/**
+	 * Plans all classes of the specified class path
+	 * @param classPath The directories and jars to plan
+	 * @param pool The pool the classes are planned in
+	 * @return The reports of all classes, sorted by class name
+	 * @throws IOException
+	 */
+	public List<ClassReport> plan(List<Path> classPath, ForkJoinPool pool) throws IOException {
+		URL[] urls = new URL[classPath.size()];
+		for(int i = 0; i < urls.length; i++) {
+			urls[i] = classPath.get(i).toUri().toURL();
+		}
+		try(URLClassLoader loader = new URLClassLoader(urls, DryRunPlanner.class.getClassLoader())) {
+			List<ForkJoinTask<ClassReport>> tasks = new ArrayList<>();
+			for(Path entry : classPath) {
+				if(Files.isDirectory(entry)) {
+					List<Path> classFiles;
+					try(Stream<Path> files = Files.walk(entry)) {
+						classFiles = files.filter(f -> f.toString().endsWith(".class")).collect(Collectors.toList());
+					}
+					for(Path file : classFiles) {
+						String name = entry.relativize(file).toString().replace(File.separatorChar, '/');
+						byte[] bytes = Files.readAllBytes(file);
+						tasks.add(pool.submit(() -> this.planClass(name.substring(0, name.length() - ".class".length()), bytes, loader)));
+					}
+				} else if(Files.isRegularFile(entry)) {
+					try(JarFile jar = new JarFile(entry.toFile())) {
+						Enumeration<JarEntry> entries = jar.entries();
+						while(entries.hasMoreElements()) {
+							JarEntry jarEntry = entries.nextElement();
+							String name = jarEntry.getName();
+							if(!jarEntry.isDirectory() && name.endsWith(".class")) {
+								byte[] bytes = readEntry(jar, jarEntry);
+								tasks.add(pool.submit(() -> this.planClass(name.substring(0, name.length() - ".class".length()), bytes, loader)));
+							}
+						}
+					}
+				}
+			}
+			List<ClassReport> reports = new ArrayList<>(tasks.size());
+			for(ForkJoinTask<ClassReport> task : tasks) {
+				reports.add(task.join());
+			}
+			reports.sort(Comparator.comparing(ClassReport::getClassName));
+			return reports;
+		}
+	}
+
+	/**
+	 * Plans the specified class
+	 * @param className The internal name of the class
+	 * @param bytes The class file
+	 * @param loader The class loader of the class path, used to resolve the class hierarchy
+	 * @return
+	 */
+	private ClassReport planClass(String className, byte[] bytes, ClassLoader loader) {
+		long start = System.nanoTime();
+		boolean accepted = !className.endsWith("module-info") && this.instrumentor.acceptsClass(className);
+		long acceptNanos = System.nanoTime() - start;
+		if(!accepted) {
+			return new ClassReport(className, acceptNanos, 0, null, null);
+		}
+		start = System.nanoTime();
+		try {
+			//Read exactly like by the class transformer, so that the reported instruction indices are the applied ones
+			ClassNode clsNode = ClassNodeMerger.read(new ClassReader(bytes)).getClassNode();
+			InstrumentationPlan plan = this.instrumentor.planClass(clsNode, loader);
+			long planNanos = System.nanoTime() - start;
+			return new ClassReport(className, acceptNanos, planNanos, describe(clsNode, plan), null);
+		} catch(Exception ex) {
+			return new ClassReport(className, acceptNanos, System.nanoTime() - start, null, ex);
+		}
+	}
+
+	/**
+	 * Describes each edit of the specified plan
+	 * @param clsNode
+	 * @param plan
+	 * @return
+	 */
+	private static List<String> describe(ClassNode clsNode, InstrumentationPlan plan) {
+		List<String> targets = new ArrayList<>();
+		for(String itf : plan.getInterfaces()) {
+			if(!clsNode.interfaces.contains(itf)) {
+				targets.add(String.format("implements %s", itf));
+			}
+		}
+		for(FieldAccessorTarget target : plan.getFieldAccessors()) {
+			targets.add(String.format("field accessor %s#%s -> field %s %s", target.getAccessorClass(), target.getFieldAccessor().getAccessorMethod().name, target.getFieldName(), target.getFieldDesc()));
+		}
+		for(FieldGeneratorTarget target : plan.getFieldGenerators()) {
+			targets.add(String.format("field generator %s#%s -> %s field %s", target.getAccessorClass(), target.getFieldGenerator().getAccessorMethod().name, target.isGenerateField() ? "new" : "shared", target.getFieldGenerator().getFieldName()));
+		}
+		for(MethodAccessorTarget target : plan.getMethodAccessors()) {
+			MethodNode method = target.getTargetMethod();
+			targets.add(String.format("method accessor %s -> method %s%s", target.getMethodAccessor().getAccessorMethod().name, method.name, method.desc));
+		}
+		for(InterceptorTarget target : plan.getInterceptors()) {
+			MethodNode method = target.getTargetMethod();
+			String jump = target.getJumpNode() != null ? String.format(", jump to instruction %d", method.instructions.indexOf(target.getJumpNode())) : "";
+			targets.add(String.format("interceptor %s#%s -> method %s%s at instruction %d%s", target.getInterceptor().getAccessorClass(), target.getInterceptor().getInterceptorMethod(), method.name, method.desc, method.instructions.indexOf(target.getInsertionNode()), jump));
+		}
+		return targets;
+	}
+
+	/**
+	 * Prints a summary and the plans of all targeted classes
+	 * @param reports
+	 * @param out
+	 */
+	public static void printReport(List<ClassReport> reports, PrintStream out) {
+		List<ClassReport> targeted = reports.stream().filter(ClassReport::isTargeted).collect(Collectors.toList());
+		long failed = targeted.stream().filter(r -> r.getError() != null).count();
+		long acceptNanos = reports.stream().mapToLong(ClassReport::getAcceptNanos).sum();
+		long planNanos = reports.stream().mapToLong(ClassReport::getPlanNanos).sum();
+		out.println(String.format("%d classes, %d targeted, %d failed", reports.size(), targeted.size(), failed));
+		out.println(String.format("identification %.3fms, planning %.3fms", acceptNanos / 1e6D, planNanos / 1e6D));
+
+		out.println();
+		out.println("Slowest classes:");
+		reports.stream().sorted(Comparator.comparingLong((ClassReport r) -> r.getAcceptNanos() + r.getPlanNanos()).reversed()).limit(SLOWEST_CLASSES)
+		.forEach(r -> out.println(String.format("  %s %.3fms", r.getClassName(), (r.getAcceptNanos() + r.getPlanNanos()) / 1e6D)));
+
+		for(ClassReport report : targeted) {
+			out.println();
+			out.println(String.format("%s (identification %.3fms, planning %.3fms)", report.getClassName(), report.getAcceptNanos() / 1e6D, report.getPlanNanos() / 1e6D));
+			if(report.getError() != null) {
+				out.println(String.format("  failed: %s", report.getError()));
+			} else {
+				for(String target : report.getTargets()) {
+					out.println("  " + target);
+				}
+			}
+		}
+	}
+
+	private static byte[] readEntry(JarFile jar, JarEntry entry) throws IOException {
+		try(InputStream is = jar.getInputStream(entry)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = is.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package pr0x79;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+
+import pr0x79.instrumentation.BytecodeInstrumentation;
+import pr0x79.instrumentation.ClassNodeMerger;
+import pr0x79.instrumentation.ConstantPoolScanner;
+import pr0x79.instrumentation.InstrumentationClassWriter;
+import pr0x79.instrumentation.InstrumentationFingerprint;
+import pr0x79.instrumentation.InstrumentationPlan;
+import pr0x79.instrumentation.WovenAttribute;
+import pr0x79.instrumentation.accessor.ClassAccessor;
+
+/**
+ * Weaves the classes of a jar ahead of time, so that they don't have to be
+ * instrumented when they are loaded. The same {@link IInstrumentor}s as for the java agent
+ * are used, they and their mappings must be on the class path of the weaver.
+ * The classes of the jar are woven in parallel and are marked with a {@link WovenAttribute},
+ * the java agent leaves marked classes untouched. The woven jar contains a manifest of
+ * all woven classes and their applied accessors at {@link #WOVEN_MANIFEST}.
+ * <p>
+ * Accessor classes are not woven ahead of time, they are still instrumented by the java agent.
+ * <pre>
+ * java -cp &lt;weaver and instrumentor class path&gt; pr0x79.OfflineWeaver &lt;input jar&gt; &lt;output jar&gt; &lt;instrumentor class&gt;...
+ * </pre>
+ */
+public class OfflineWeaver {
+	public static final String WOVEN_MANIFEST = "META-INF/pr0x79/woven.txt";
+
+	//Descriptor of the class accessor annotation as it appears in the constant pool of accessor classes
+	private static final byte[] CLASS_ACCESSOR_DESC = Type.getDescriptor(ClassAccessor.class).getBytes(StandardCharsets.UTF_8);
+
+	private final Bootstrapper bootstrapper;
+	private final BytecodeInstrumentation instrumentor;
+	private final byte[] fingerprint;
+
+	/**
+	 * Result of weaving a single jar entry
+	 */
+	private static class WovenEntry {
+		private final JarEntry entry;
+		private final byte[] bytes;
+		private final String manifestLine;
+
+		private WovenEntry(JarEntry entry, byte[] bytes, String manifestLine) {
+			this.entry = entry;
+			this.bytes = bytes;
+			this.manifestLine = manifestLine;
+		}
+	}
+
+	private OfflineWeaver(Bootstrapper bootstrapper) throws IOException {
+		this.bootstrapper = bootstrapper;
+		this.instrumentor = bootstrapper.getInstrumentor();
+		byte[] fingerprint = InstrumentationFingerprint.compute(bootstrapper.getIdentifiers(), bootstrapper.getAccessors());
+		this.fingerprint = fingerprint != null ? fingerprint : new byte[0];
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 3) {
+			System.err.println("Usage: OfflineWeaver <input jar> <output jar> <instrumentor class>...");
+			System.exit(1);
+		}
+		OfflineWeaver weaver = new OfflineWeaver(Bootstrapper.initializeOffline(Arrays.copyOfRange(args, 2, args.length)));
+		int woven = weaver.weave(Paths.get(args[0]), Paths.get(args[1]), ForkJoinPool.commonPool());
+		System.out.println(String.format("Woven %d classes into %s", woven, args[1]));
+	}
+
+	/**
+	 * Weaves all classes of the input jar and writes the woven jar
+	 * @param input The input jar
+	 * @param output The woven jar
+	 * @param pool The pool the classes are woven in
+	 * @return The number of woven classes
+	 * @throws IOException
+	 */
+	public int weave(Path input, Path output, ForkJoinPool pool) throws IOException {
+		try(JarFile jar = new JarFile(input.toFile());
+				URLClassLoader loader = new URLClassLoader(new URL[] { input.toUri().toURL() }, OfflineWeaver.class.getClassLoader())) {
+			List<ForkJoinTask<WovenEntry>> tasks = new ArrayList<>();
+			Enumeration<JarEntry> entries = jar.entries();
+			while(entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				byte[] bytes = readEntry(jar, entry);
+				tasks.add(pool.submit(() -> this.weaveEntry(entry, bytes, loader)));
+			}
+
+			StringBuilder manifest = new StringBuilder();
+			manifest.append("fingerprint ").append(InstrumentationFingerprint.toHex(this.fingerprint)).append('\n');
+			int woven = 0;
+
+			Path parent = output.toAbsolutePath().getParent();
+			if(parent != null) {
+				Files.createDirectories(parent);
+			}
+			try(OutputStream out = Files.newOutputStream(output); JarOutputStream jarOut = new JarOutputStream(out)) {
+				for(ForkJoinTask<WovenEntry> task : tasks) {
+					WovenEntry result = task.join();
+					if(isSignatureFile(result.entry.getName()) || result.entry.getName().equals(WOVEN_MANIFEST)) {
+						//Signatures are invalidated by weaving, an existing manifest is replaced
+						continue;
+					}
+					if(result.manifestLine != null) {
+						manifest.append(result.manifestLine).append('\n');
+						woven++;
+					}
+					JarEntry entry = new JarEntry(result.entry.getName());
+					entry.setTime(result.entry.getTime());
+					jarOut.putNextEntry(entry);
+					jarOut.write(result.bytes);
+					jarOut.closeEntry();
+				}
+				jarOut.putNextEntry(new JarEntry(WOVEN_MANIFEST));
+				jarOut.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+				jarOut.closeEntry();
+			}
+			return woven;
+		}
+	}
+
+	/**
+	 * Weaves the specified jar entry if it is a targeted class
+	 * @param entry
+	 * @param bytes
+	 * @param loader The class loader of the jar, used to resolve the class hierarchy
+	 * @return
+	 */
+	private WovenEntry weaveEntry(JarEntry entry, byte[] bytes, ClassLoader loader) {
+		String name = entry.getName();
+		if(entry.isDirectory() || !name.endsWith(".class") || name.equals("module-info.class")) {
+			return new WovenEntry(entry, bytes, null);
+		}
+		String className = name.substring(0, name.length() - ".class".length());
+		if(!this.instrumentor.acceptsClass(className) || ConstantPoolScanner.containsUtf8(bytes, CLASS_ACCESSOR_DESC) || WovenAttribute.isWoven(bytes)) {
+			return new WovenEntry(entry, bytes, null);
+		}
+		try {
+			//Read exactly like by the class transformer, so that the same instructions are identified
+			ClassReader classReader = new ClassReader(bytes);
+			ClassNodeMerger merger = ClassNodeMerger.read(classReader);
+			ClassNode clsNode = merger.getClassNode();
+
+			InstrumentationPlan plan = this.instrumentor.planClass(clsNode, loader);
+			List<String> accessors = new ArrayList<>(Arrays.asList(plan.getInterfaces()));
+			accessors.removeAll(clsNode.interfaces);
+			this.instrumentor.applyPlan(clsNode, plan);
+			clsNode.visitAttribute(new WovenAttribute(this.fingerprint));
+
+			int flags = merger.requiresFrameComputation() ? ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS : ClassWriter.COMPUTE_MAXS;
+			ClassWriter classWriter = new InstrumentationClassWriter(classReader, flags, this.instrumentor.getTypeHierarchyCache(), loader);
+			merger.merge(classReader, classWriter);
+
+			String manifestLine = String.format("%s accessors=%s fieldAccessors=%d fieldGenerators=%d methodAccessors=%d interceptors=%d",
+					className, String.join(",", accessors), plan.getFieldAccessors().size(), plan.getFieldGenerators().size(),
+					plan.getMethodAccessors().size(), plan.getInterceptors().size());
+			return new WovenEntry(entry, classWriter.toByteArray(), manifestLine);
+		} catch(Exception ex) {
+			//The class is copied as is and is instrumented when it is loaded
+			this.bootstrapper.onBootstrapperException(ex);
+			return new WovenEntry(entry, bytes, null);
+		}
+	}
+
+	private static boolean isSignatureFile(String name) {
+		if(!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) >= 0) {
+			return false;
+		}
+		return name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC");
+	}
+
+	private static byte[] readEntry(JarFile jar, JarEntry entry) throws IOException {
+		try(InputStream is = jar.getInputStream(entry)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = is.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+}
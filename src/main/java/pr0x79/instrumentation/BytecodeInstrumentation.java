@@ -2,6 +2,7 @@ package pr0x79.instrumentation;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -34,6 +36,12 @@ import org.objectweb.asm.tree.analysis.BasicValue;
 import org.objectweb.asm.tree.analysis.Frame;
 
 import pr0x79.Bootstrapper;
+import pr0x79.instrumentation.InstrumentationPlan.FieldAccessorTarget;
+import pr0x79.instrumentation.InstrumentationPlan.FieldGeneratorTarget;
+import pr0x79.instrumentation.InstrumentationPlan.InterceptorTarget;
+import pr0x79.instrumentation.InstrumentationPlan.LocalVarField;
+import pr0x79.instrumentation.InstrumentationPlan.MethodAccessorTarget;
+import pr0x79.instrumentation.InstrumentationTemplate.MemberSpec;
 import pr0x79.instrumentation.accessor.Accessors;
 import pr0x79.instrumentation.accessor.ClassAccessorData;
 import pr0x79.instrumentation.accessor.ClassAccessorData.FieldAccessorData;
@@ -63,14 +71,61 @@ import pr0x79.instrumentation.exception.identifier.method.MethodNotFoundExceptio
 import pr0x79.instrumentation.exception.identifier.method.MultipleMethodsIdentifiedException;
 import pr0x79.instrumentation.identification.IClassIdentifier;
 import pr0x79.instrumentation.identification.IFieldIdentifier;
+import pr0x79.instrumentation.identification.IFieldIdentifier.FieldDescription;
 import pr0x79.instrumentation.identification.IMethodIdentifier;
 import pr0x79.instrumentation.identification.IMethodIdentifier.MethodDescription;
+import pr0x79.metrics.FlightRecorderSupport;
+import pr0x79.metrics.IJumpAnalysisEvent;
 
 /**
  * Instruments classes using the registered {@link IAccessor}s
  */
 public class BytecodeInstrumentation {
 	private Accessors accessors;
+	private volatile ClassAccessorIndex index;
+	private final TypeHierarchyCache typeHierarchyCache = new TypeHierarchyCache();
+	private final Map<IClassIdentifier, WeakLoaderMap<IdentifiedTypes>> identifiedTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * Resolves the class hierarchy while a class is planned and records whether
+	 * the plan depends on the class loader that defines the class
+	 */
+	private static final class HierarchyLookup {
+		private final ClassLoader loader;
+		private boolean isLoaderDependent;
+
+		private HierarchyLookup(ClassLoader loader) {
+			this.loader = loader;
+		}
+	}
+
+	/**
+	 * The type ids that were already checked against a class identifier and the ids of the identified types.
+	 * Immutable, updates are published by replacing the instance
+	 */
+	private static final class IdentifiedTypes {
+		private final BitSet checked;
+		private final BitSet identified;
+
+		private IdentifiedTypes(BitSet checked, BitSet identified) {
+			this.checked = checked;
+			this.identified = identified;
+		}
+
+		/**
+		 * Returns a copy with the specified additionally checked and identified type ids
+		 * @param checked
+		 * @param identified
+		 * @return
+		 */
+		private IdentifiedTypes with(BitSet checked, BitSet identified) {
+			BitSet allChecked = (BitSet) this.checked.clone();
+			allChecked.or(checked);
+			BitSet allIdentified = (BitSet) this.identified.clone();
+			allIdentified.or(identified);
+			return new IdentifiedTypes(allChecked, allIdentified);
+		}
+	}
 
 	/**
 	 * Sets the accessors
@@ -80,12 +135,33 @@ public class BytecodeInstrumentation {
 		this.accessors = accessors;
 	}
 
+	/**
+	 * Returns the type hierarchy cache shared by the class relation checks and the class writers
+	 * @return
+	 */
+	public TypeHierarchyCache getTypeHierarchyCache() {
+		return this.typeHierarchyCache;
+	}
+
+	/**
+	 * Builds the class accessor index once all accessors have been registered.
+	 * Until then the accessors are looked up linearly
+	 */
+	public void buildIndex() {
+		this.index = new ClassAccessorIndex(this.accessors.getClassAccessors());
+	}
+
 	/**
 	 * Returns whether the specified class is accepted and has to be instrumented
 	 * @param cls
 	 * @return
 	 */
 	public boolean acceptsClass(String cls) {
+		ClassAccessorIndex index = this.index;
+		if(index != null) {
+			return index.acceptsClass(cls);
+		}
+
 		for(ClassAccessorData accessor : this.accessors.getClassAccessors()) {
 			if(accessor.getClassIdentifier() != null && isIdentifiedClass(accessor.getClassIdentifier(), cls)) {
 				return true;
@@ -226,183 +302,469 @@ public class BytecodeInstrumentation {
 	 * Instruments the specified {@link ClassNode} according to the
 	 * registered {@link IAccessor}s
 	 * @param clsNode
+	 * @param loader The class loader that defines the class, used to resolve the class hierarchy
+	 */
+	public void instrumentClass(ClassNode clsNode, ClassLoader loader) {
+		this.applyPlan(clsNode, this.planClass(clsNode, loader));
+	}
+
+	/**
+	 * Binds the identifiers of all {@link IAccessor}s that target the specified {@link ClassNode}
+	 * to the members of the class and returns the resulting {@link InstrumentationPlan}.
+	 * The members of the class are walked only once and the class is not modified
+	 * @param clsNode
+	 * @param loader The class loader that defines the class, used to resolve the class hierarchy
+	 * @return
 	 */
-	public void instrumentClass(ClassNode clsNode) {
+	public InstrumentationPlan planClass(ClassNode clsNode, ClassLoader loader) {
+		return this.planClass(clsNode, loader, this.getTemplate(clsNode.name));
+	}
+
+	/**
+	 * Returns the {@link InstrumentationTemplate} for the specified class.
+	 * Templates of classes that are only targeted by static class identifiers are precomputed
+	 * @param cls The internal name of the class
+	 * @return
+	 */
+	public InstrumentationTemplate getTemplate(String cls) {
+		ClassAccessorIndex index = this.index;
+		if(index != null) {
+			return index.getTemplate(cls);
+		}
+
 		List<ClassAccessorData> classAccessors = new ArrayList<>();
+		List<MethodInterceptorData> classInterceptors = new ArrayList<>();
 		for(ClassAccessorData accessor : this.accessors.getClassAccessors()) {
-			if(isIdentifiedClass(accessor.getClassIdentifier(), clsNode.name)) {
+			if(isIdentifiedClass(accessor.getClassIdentifier(), cls)) {
 				classAccessors.add(accessor);
 			}
+			for(MethodInterceptorData interceptor : accessor.getMethodInterceptors()) {
+				if(isIdentifiedClass(interceptor.getClassIdentifier(), cls)) {
+					classInterceptors.add(interceptor);
+				}
+			}
 		}
+		return new InstrumentationTemplate(classAccessors, classInterceptors);
+	}
 
-		//Instrument class body
-		String[] interfaces = new String[classAccessors.size()];
-		int i = 0;
-		for(ClassAccessorData accessor : classAccessors) {
-			interfaces[i] = accessor.getAccessorClass().replace('.', '/');
-			i++;
+	/**
+	 * Binds the identifiers of the specified {@link InstrumentationTemplate} to the
+	 * members of the {@link ClassNode} and returns the resulting {@link InstrumentationPlan}.
+	 * The members of the class are walked only once and the class is not modified, so the
+	 * instruction identifiers of all accessors identify the instructions of the unmodified methods
+	 * @param clsNode
+	 * @param loader The class loader that defines the class, used to resolve the class hierarchy
+	 * @param template
+	 * @return
+	 */
+	public InstrumentationPlan planClass(ClassNode clsNode, ClassLoader loader, InstrumentationTemplate template) {
+		HierarchyLookup hierarchy = new HierarchyLookup(loader);
+		List<MemberSpec<IFieldIdentifier>> fieldSpecs = template.getFieldSpecs();
+		List<MemberSpec<IMethodIdentifier>> methodSpecs = template.getMethodSpecs();
+		FieldNode[] fieldTargets = new FieldNode[fieldSpecs.size()];
+		MethodNode[] methodTargets = new MethodNode[methodSpecs.size()];
+
+		//Bind the identifiers in a single walk over the class members
+		Map<String, List<String>> fieldDescs = new HashMap<>();
+		for(FieldNode field : clsNode.fields) {
+			List<String> descs = fieldDescs.get(field.name);
+			if(descs == null) {
+				fieldDescs.put(field.name, descs = new ArrayList<>(1));
+			}
+			descs.add(field.desc);
+			if(fieldTargets.length == 0) {
+				continue;
+			}
+			for(int spec : template.getStaticFieldSpecs(new FieldDescription(field.name, field.desc))) {
+				bindField(fieldSpecs.get(spec), fieldTargets, spec, field);
+			}
+			for(int spec : template.getDynamicFieldSpecs()) {
+				if(fieldSpecs.get(spec).identifier.isIdentifiedField(field)) {
+					bindField(fieldSpecs.get(spec), fieldTargets, spec, field);
+				}
+			}
+		}
+		Set<String> methodNames = new HashSet<>();
+		Set<MethodDescription> methodDescs = new HashSet<>();
+		for(MethodNode method : clsNode.methods) {
+			MethodDescription description = new MethodDescription(method.name, method.desc);
+			methodNames.add(method.name);
+			methodDescs.add(description);
+			if(methodTargets.length == 0) {
+				continue;
+			}
+			for(int spec : template.getStaticMethodSpecs(description)) {
+				bindMethod(methodSpecs.get(spec), methodTargets, spec, method);
+			}
+			for(int spec : template.getDynamicMethodSpecs()) {
+				if(methodSpecs.get(spec).identifier.isIdentifiedMethod(method)) {
+					bindMethod(methodSpecs.get(spec), methodTargets, spec, method);
+				}
+			}
 		}
 
-		clsNode.visit(clsNode.version, clsNode.access, clsNode.name, clsNode.signature, clsNode.superName, interfaces);
+		//Validate the bound members and create the plan. Generated members are added to the taken names
+		List<FieldAccessorTarget> fieldAccessorTargets = new ArrayList<>();
+		List<FieldGeneratorTarget> fieldGeneratorTargets = new ArrayList<>();
+		List<MethodAccessorTarget> methodAccessorTargets = new ArrayList<>();
+		List<LocalVarField> localVarFields = new ArrayList<>();
+		List<InterceptorTarget> interceptorTargets = new ArrayList<>();
+		Map<MethodNode, Frame<BasicValue>[]> frames = new HashMap<>();
+		List<ClassAccessorData> classAccessors = template.getClassAccessors();
+		for(int i = 0; i < classAccessors.size(); i++) {
+			ClassAccessorData classAccessor = classAccessors.get(i);
+			for(FieldAccessorData fieldAccessor : classAccessor.getFieldAccessors()) {
+				fieldAccessorTargets.add(this.planFieldAccessor(fieldAccessor, fieldTargets[template.getSpecIndex(fieldAccessor)], classAccessor.getAccessorClass(), methodNames, methodDescs, hierarchy));
+			}
+			for(FieldGeneratorData fieldGenerator : classAccessor.getFieldGenerators()) {
+				fieldGeneratorTargets.add(this.planFieldGenerator(fieldGenerator, classAccessor.getAccessorClass(), methodNames, methodDescs, fieldDescs, hierarchy));
+			}
+			for(MethodAccessorData methodAccessor : classAccessor.getMethodAccessors()) {
+				methodAccessorTargets.add(this.planMethodAccessor(methodAccessor, methodTargets[template.getSpecIndex(methodAccessor)], classAccessor.getAccessorClass(), methodNames, methodDescs, hierarchy));
+			}
+			List<MethodInterceptorData> accessorInterceptors = template.getMethodInterceptors(i);
+			for(MethodInterceptorData interceptor : accessorInterceptors) {
+				if(!interceptor.isReturn()) {
+					for(LocalVarData localVar : interceptor.getLocalVars()) {
+						String generatedField = getUniqueName(fieldDescs.keySet());
+						Type fieldType = Type.getArgumentTypes(interceptor.getInterceptorMethodDesc())[localVar.getParameterIndex()];
+						List<String> descs = new ArrayList<>(1);
+						descs.add(fieldType.getDescriptor());
+						fieldDescs.put(generatedField, descs);
+						methodNames.add(localVar.getGeneratedSetterMethod());
+						methodNames.add(localVar.getGeneratedGetterMethod());
+						methodDescs.add(new MethodDescription(localVar.getGeneratedSetterMethod(), Type.getMethodDescriptor(Type.VOID_TYPE, fieldType)));
+						methodDescs.add(new MethodDescription(localVar.getGeneratedGetterMethod(), Type.getMethodDescriptor(fieldType)));
+						localVarFields.add(new LocalVarField(localVar, generatedField, fieldType));
+					}
+				}
+			}
+			for(MethodInterceptorData interceptor : accessorInterceptors) {
+				interceptorTargets.add(this.planMethodInterceptor(clsNode, interceptor, methodTargets[template.getSpecIndex(interceptor)], frames, hierarchy));
+			}
+		}
 
-		//Instrument accessor and interceptor methods
-		for(ClassAccessorData classAccessor : classAccessors) {
-			this.instrumentFieldAccessors(clsNode, classAccessor);
-			this.instrumentFieldGenerators(clsNode, classAccessor);
-			this.instrumentMethodAccessors(clsNode, classAccessor);
-			this.instrumentMethodInterceptors(clsNode, classAccessor);
+		return new InstrumentationPlan(template.getInterfaces(), fieldAccessorTargets, fieldGeneratorTargets, methodAccessorTargets, localVarFields, interceptorTargets, !hierarchy.isLoaderDependent);
+	}
+
+	private static void bindField(MemberSpec<IFieldIdentifier> spec, FieldNode[] targets, int index, FieldNode field) {
+		if(targets[index] != null) {
+			throw new MultipleFieldsIdentifiedException(spec.accessorClass, spec.accessorMethod, spec.identifierId, spec.identifier);
 		}
+		targets[index] = field;
 	}
 
-	/**
-	 * Instruments all registered field accessors
-	 * @param clsNode
-	 * @param classAccessor
-	 */
-	private void instrumentFieldAccessors(ClassNode clsNode, ClassAccessorData classAccessor) {
-		for(FieldAccessorData fieldAccessor : classAccessor.getFieldAccessors()) {
-			this.instrumentFieldAccessor(fieldAccessor, clsNode, classAccessor.getAccessorClass());
+	private static void bindMethod(MemberSpec<IMethodIdentifier> spec, MethodNode[] targets, int index, MethodNode method) {
+		if(targets[index] != null) {
+			throw new MultipleMethodsIdentifiedException(spec.accessorClass, spec.accessorMethod, spec.identifierId, spec.identifier);
 		}
+		targets[index] = method;
 	}
 
 	/**
-	 * Instruments a single field accessor
+	 * Validates a single field accessor and its bound field
 	 * @param fieldAccessor
-	 * @param clsNode
+	 * @param targetField The bound field, or null
 	 * @param accessorClass
+	 * @param methodNames The taken method names
+	 * @param methodDescs The taken method names and descriptors
+	 * @param hierarchy Resolves the class hierarchy through the class loader that defines the class
+	 * @return
 	 */
-	private void instrumentFieldAccessor(FieldAccessorData fieldAccessor, ClassNode clsNode, String accessorClass) {
+	private FieldAccessorTarget planFieldAccessor(FieldAccessorData fieldAccessor, FieldNode targetField, String accessorClass, Set<String> methodNames, Set<MethodDescription> methodDescs, HierarchyLookup hierarchy) {
 		MethodNode accessorMethod = fieldAccessor.getAccessorMethod();
 		Type[] accessorParams = Type.getArgumentTypes(accessorMethod.desc);
 		Type accessorReturnType = Type.getReturnType(accessorMethod.desc);
-		for(MethodNode methodNode : clsNode.methods) {
-			if(methodNode.name.equals(accessorMethod.name) && methodNode.desc.equals(accessorMethod.desc)) {
-				throw new FieldAccessorTakenException(String.format("Method for field accessor %s#%s is already taken", accessorClass, accessorMethod.name + accessorMethod.desc), accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc));
-			}
-		}
-		FieldNode targetField = null;
-		IFieldIdentifier identifier = fieldAccessor.getFieldIdentifier();
-		for(FieldNode fieldNode : clsNode.fields) {
-			if(isIdentifiedField(identifier, fieldNode)) {
-				if(targetField != null) {
-					throw new MultipleFieldsIdentifiedException(accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), fieldAccessor.getIdentifierId(), identifier);
-				}
-				if(fieldAccessor.isSetter()) {
-					if(!this.isSetterTypeValidForField(fieldNode.desc, accessorMethod)) {
-						throw new InvalidSetterTypeException(accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), accessorParams[0].getClassName(), Type.getType(fieldNode.desc).getClassName());
-					}
-				} else {
-					if(!this.isGetterTypeValidForField(fieldNode.desc, accessorMethod)) {
-						throw new InvalidGetterTypeException(accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), accessorReturnType.getClassName(), Type.getType(fieldNode.desc).getClassName());
-					}
-				}
-				targetField = fieldNode;
-			}
+		if(!methodDescs.add(new MethodDescription(accessorMethod.name, accessorMethod.desc))) {
+			throw new FieldAccessorTakenException(String.format("Method for field accessor %s#%s is already taken", accessorClass, accessorMethod.name + accessorMethod.desc), accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc));
 		}
+		methodNames.add(accessorMethod.name);
 		if(targetField == null) {
-			throw new FieldNotFoundException(accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), fieldAccessor.getIdentifierId(), identifier);
+			throw new FieldNotFoundException(accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), fieldAccessor.getIdentifierId(), fieldAccessor.getFieldIdentifier());
 		}
-		MethodVisitor mv = clsNode.visitMethod(Opcodes.ACC_PUBLIC, accessorMethod.name, 
-				accessorMethod.desc, 
-				fieldAccessor.isSetter() ? null : accessorReturnType.getDescriptor(), null);
 		if(fieldAccessor.isSetter()) {
-			this.instrumentFieldSetter(mv, clsNode, targetField.name, targetField.desc, accessorMethod, accessorClass);
+			if(!this.isSetterTypeValidForField(targetField.desc, accessorMethod, hierarchy)) {
+				throw new InvalidSetterTypeException(accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), accessorParams[0].getClassName(), Type.getType(targetField.desc).getClassName());
+			}
 		} else {
-			this.instrumentFieldGetter(mv, clsNode, targetField.name, targetField.desc, accessorMethod, accessorClass);
-		}
-	}
-
-	/**
-	 * Instruments all registered field generators
-	 * @param clsNode
-	 * @param classAccessor
-	 */
-	private void instrumentFieldGenerators(ClassNode clsNode, ClassAccessorData classAccessor) {
-		for(FieldGeneratorData fieldGenerator : classAccessor.getFieldGenerators()) {
-			this.instrumentFieldGenerator(fieldGenerator, clsNode, classAccessor.getAccessorClass());
+			if(!this.isGetterTypeValidForField(targetField.desc, accessorMethod, hierarchy)) {
+				throw new InvalidGetterTypeException(accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), accessorReturnType.getClassName(), Type.getType(targetField.desc).getClassName());
+			}
 		}
+		return new FieldAccessorTarget(fieldAccessor, accessorClass, targetField.name, targetField.desc);
 	}
 
 	/**
-	 * Instruments a single field generator
+	 * Validates a single field generator
 	 * @param fieldGenerator
-	 * @param clsNode
 	 * @param accessorClass
+	 * @param methodNames The taken method names
+	 * @param methodDescs The taken method names and descriptors
+	 * @param fieldDescs The taken field names and their descriptors
+	 * @param hierarchy Resolves the class hierarchy through the class loader that defines the class
+	 * @return
 	 */
-	private void instrumentFieldGenerator(FieldGeneratorData fieldGenerator, ClassNode clsNode, String accessorClass) {
+	private FieldGeneratorTarget planFieldGenerator(FieldGeneratorData fieldGenerator, String accessorClass, Set<String> methodNames, Set<MethodDescription> methodDescs, Map<String, List<String>> fieldDescs, HierarchyLookup hierarchy) {
 		MethodNode accessorMethod = fieldGenerator.getAccessorMethod();
-		Type accessorReturnType = Type.getReturnType(accessorMethod.desc);
-		for(MethodNode methodNode : clsNode.methods) {
-			if(methodNode.name.equals(accessorMethod.name) && methodNode.desc.equals(accessorMethod.desc)) {
-				throw new FieldAccessorTakenException(String.format("Method for field generator %s#%s is already taken", accessorClass, accessorMethod.name + accessorMethod.desc), accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc));
-			}
+		if(!methodDescs.add(new MethodDescription(accessorMethod.name, accessorMethod.desc))) {
+			throw new FieldAccessorTakenException(String.format("Method for field generator %s#%s is already taken", accessorClass, accessorMethod.name + accessorMethod.desc), accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc));
 		}
+		methodNames.add(accessorMethod.name);
 		boolean generate = true;
-		for(FieldNode field : clsNode.fields) {
-			if(field.name.equals(fieldGenerator.getFieldName())) {
-				if(!this.isTypeInstanceof(Type.getType(field.desc), fieldGenerator.getFieldType())) {
+		List<String> descs = fieldDescs.get(fieldGenerator.getFieldName());
+		if(descs != null) {
+			for(String desc : descs) {
+				if(!this.isTypeInstanceof(Type.getType(desc), fieldGenerator.getFieldType(), hierarchy)) {
 					throw new FieldGeneratorTakenException(String.format("Field %s for field generator %s#%s is already taken", fieldGenerator.getFieldName(), accessorClass, accessorMethod.name + accessorMethod.desc), accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), fieldGenerator.getFieldName());
 				}
 				generate = false;
 			}
 		}
-
-		String fieldName = fieldGenerator.getFieldName();
-		String fieldDesc = fieldGenerator.getFieldType().getDescriptor();
 		if(generate) {
-			clsNode.visitField(Opcodes.ACC_PUBLIC, fieldName, fieldDesc, null, null);
+			descs = new ArrayList<>(1);
+			descs.add(fieldGenerator.getFieldType().getDescriptor());
+			fieldDescs.put(fieldGenerator.getFieldName(), descs);
 		}
-		MethodVisitor mv = clsNode.visitMethod(Opcodes.ACC_PUBLIC, accessorMethod.name, 
-				accessorMethod.desc, 
-				fieldGenerator.isSetter() ? null : accessorReturnType.getDescriptor(), null);
-		if(fieldGenerator.isSetter()) {
-			this.instrumentFieldSetter(mv, clsNode, fieldName, fieldDesc, accessorMethod, accessorClass);
-		} else {
-			this.instrumentFieldGetter(mv, clsNode, fieldName, fieldDesc, accessorMethod, accessorClass);
+		return new FieldGeneratorTarget(fieldGenerator, accessorClass, generate);
+	}
+
+	/**
+	 * Validates a single method accessor and its bound method
+	 * @param methodAccessor
+	 * @param targetMethod The bound method, or null
+	 * @param accessorClass
+	 * @param methodNames The taken method names
+	 * @param methodDescs The taken method names and descriptors
+	 * @param hierarchy Resolves the class hierarchy through the class loader that defines the class
+	 * @return
+	 */
+	private MethodAccessorTarget planMethodAccessor(MethodAccessorData methodAccessor, MethodNode targetMethod, String accessorClass, Set<String> methodNames, Set<MethodDescription> methodDescs, HierarchyLookup hierarchy) {
+		MethodNode accessorMethod = methodAccessor.getAccessorMethod();
+		if(methodNames.contains(accessorMethod.name)) {
+			throw new MethodAccessorTakenException(String.format("Method for method accessor %s#%s is already taken", accessorClass, accessorMethod.name + accessorMethod.desc), accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc));
+		}
+		if(targetMethod == null) {
+			throw new MethodNotFoundException(accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), methodAccessor.getIdentifierId(), methodAccessor.getMethodIdentifier());
+		}
+		if(!this.isMethodAccessorValid(targetMethod.desc, accessorMethod, hierarchy)) {
+			throw new InvalidMethodDescriptorException(String.format("Method accessor %s#%s descriptor does not match. Current: %s, Expected: %s, or accessors of those classes", accessorClass, accessorMethod.name + accessorMethod.desc, accessorMethod.desc, targetMethod.desc), accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), accessorMethod.desc, targetMethod.desc);
+		}
+		Set<String> accessorExceptions = new HashSet<>();
+		accessorExceptions.addAll(accessorMethod.exceptions);
+		Set<String> targetExceptions = new HashSet<>(targetMethod.exceptions);
+		if(!targetExceptions.equals(accessorExceptions)) {
+			String currExcp = Arrays.toString(accessorExceptions.toArray(new String[0]));
+			String expectedExcp = Arrays.toString(targetExceptions.toArray(new String[0]));
+			throw new InvalidMethodExceptionsException(String.format("Method accessor %s#%s exceptions do not match. Current: %s, Expected: %s", accessorClass, accessorMethod.name + accessorMethod.desc, currExcp, expectedExcp), accessorClass, new MethodDescription(accessorMethod.name, accessorMethod.desc), currExcp, expectedExcp);
 		}
+		methodNames.add(accessorMethod.name);
+		methodDescs.add(new MethodDescription(accessorMethod.name, accessorMethod.desc));
+		return new MethodAccessorTarget(methodAccessor, targetMethod, targetExceptions.toArray(new String[0]));
 	}
 
 	/**
-	 * Instruments all registered method accessors
+	 * Identifies the insertion points and local variables of a single interceptor in its bound method
 	 * @param clsNode
-	 * @param classAccessor
-	 */
-	private void instrumentMethodAccessors(ClassNode clsNode, ClassAccessorData classAccessor) {
-		for(MethodAccessorData methodAccessor : classAccessor.getMethodAccessors()) {
-			MethodNode accessorMethod = methodAccessor.getAccessorMethod();
-			MethodNode targetMethod = null;
-			for(MethodNode methodNode : clsNode.methods) {
-				if(methodNode.name.equals(accessorMethod.name)) {
-					throw new MethodAccessorTakenException(String.format("Method for method accessor %s#%s is already taken", classAccessor.getAccessorClass(), accessorMethod.name + accessorMethod.desc), classAccessor.getAccessorClass(), new MethodDescription(accessorMethod.name, accessorMethod.desc));
+	 * @param interceptor
+	 * @param targetMethod The bound method, or null
+	 * @param frames The analyzed frames of the target methods
+	 * @param hierarchy Resolves the class hierarchy through the class loader that defines the class
+	 * @return
+	 */
+	private InterceptorTarget planMethodInterceptor(ClassNode clsNode, MethodInterceptorData interceptor, MethodNode targetMethod, Map<MethodNode, Frame<BasicValue>[]> frames, HierarchyLookup hierarchy) {
+		if(targetMethod == null) {
+			throw new MethodNotFoundException(interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), interceptor.getMethodIdentifierId(), interceptor.getMethodIdentifier());
+		}
+
+		int instructionIndex = interceptor.getInstructionIdentifier().identify(targetMethod);
+		if(instructionIndex == -1) {
+			throw new InstructionNotFoundException(interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), interceptor.getInstructionIdentifierId(), interceptor.getInstructionIdentifier());
+		}
+		if(instructionIndex < 0 || instructionIndex >= targetMethod.instructions.size()) {
+			throw new InstructionOutOfBoundsException(String.format("Instruction index of %s#%s:%s is out of bounds. Current: %s, Expected: [%d, %d]", interceptor.getAccessorClass(), interceptor.getInterceptorMethod() + interceptor.getInterceptorMethodDesc(), interceptor.getInstructionIdentifierId(), instructionIndex, 0, targetMethod.instructions.size() - 1), null, instructionIndex, 0, targetMethod.instructions.size() - 1, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getInstructionIdentifierId(), interceptor.getInstructionIdentifier());
+		}
+
+		int jumpInstructionIndex = -1;
+		if(interceptor.getJumpInstructionIdentifier() != null) {
+			if(Type.getReturnType(interceptor.getInterceptorMethodDesc()) != Type.BOOLEAN_TYPE) {
+				throw new InvalidReturnTypeException(String.format("Return type of method interceptor %s#%s with instruction jump is not boolean", clsNode.name, targetMethod.name + targetMethod.desc), null, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), boolean.class.getName(), Type.getReturnType(interceptor.getInterceptorMethodDesc()).getClassName());
+			}
+			jumpInstructionIndex = interceptor.getJumpInstructionIdentifier().identify(targetMethod);
+			if(jumpInstructionIndex == -1) {
+				throw new JumpInstructionNotFoundException(clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getJumpInstructionIdentifierId(), interceptor.getJumpInstructionIdentifier());
+			}
+			if(jumpInstructionIndex < 0 || jumpInstructionIndex >= targetMethod.instructions.size()) {
+				throw new InstructionOutOfBoundsException(String.format("Instruction jump index of %s#%s:%s is out of bounds. Current: %s, Expected: [%d, %d]", clsNode.name, targetMethod.name + targetMethod.desc, interceptor.getJumpInstructionIdentifierId(), jumpInstructionIndex, 0, targetMethod.instructions.size() - 1), null, jumpInstructionIndex, 0, targetMethod.instructions.size() - 1, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getJumpInstructionIdentifierId(), interceptor.getJumpInstructionIdentifier());
+			}
+			if(jumpInstructionIndex <= instructionIndex) {
+				throw new InstructionOutOfBoundsException(String.format("Instruction jump index of %s#%s:%s must be after the interceptor instruction index. Current: %s, Expected: >%d", clsNode.name, targetMethod.name + targetMethod.desc, interceptor.getJumpInstructionIdentifierId(), jumpInstructionIndex, instructionIndex), null, jumpInstructionIndex, instructionIndex + 1, targetMethod.instructions.size() - 1, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getJumpInstructionIdentifierId(), interceptor.getJumpInstructionIdentifier());
+			}
+			if(!interceptor.isReturn()) {
+				this.checkJumpTarget(clsNode, targetMethod, interceptor, jumpInstructionIndex, frames);
+			}
+		}
+
+		//Find and validate the imported local variables
+		List<LocalVarData> localVars = interceptor.getLocalVars();
+		LocalVariableNode[] localVariables = new LocalVariableNode[localVars.size()];
+		for(int i = 0; i < localVariables.length; i++) {
+			LocalVarData importData = localVars.get(i);
+			int importLocalVariableIndex = importData.getInstructionIdentifier().identify(targetMethod);
+			LocalVariableNode importLocalVariable = null;
+			for(LocalVariableNode localVar : targetMethod.localVariables) {
+				if(localVar.index == importLocalVariableIndex) {
+					importLocalVariable = localVar;
 				}
 			}
-			IMethodIdentifier identifier = methodAccessor.getMethodIdentifier();
-			for(MethodNode methodNode : clsNode.methods) {
-				if(isIdentifiedMethod(identifier, methodNode)) {
-					if(targetMethod != null) {
-						throw new MultipleMethodsIdentifiedException(classAccessor.getAccessorClass(), new MethodDescription(methodAccessor.getAccessorMethod().name, accessorMethod.desc), methodAccessor.getIdentifierId(), identifier);
-					}
-					if(!this.isMethodAccessorValid(methodNode.desc, accessorMethod)) {
-						throw new InvalidMethodDescriptorException(String.format("Method accessor %s#%s descriptor does not match. Current: %s, Expected: %s, or accessors of those classes", classAccessor.getAccessorClass(), accessorMethod.name + accessorMethod.desc, accessorMethod.desc, methodNode.desc), classAccessor.getAccessorClass(), new MethodDescription(accessorMethod.name, accessorMethod.desc), accessorMethod.desc, methodNode.desc);
+			if(importLocalVariable == null) {
+				throw new ImportInstructionNotFoundException(importData.getParameterIndex(), interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), importData.getInstructionIdentifierId(), importData.getInstructionIdentifier());
+			}
+			Type localVarType = Type.getType(importLocalVariable.desc);
+			Type paramType = Type.getArgumentTypes(interceptor.getInterceptorMethodDesc())[importData.getParameterIndex()];
+			ClassAccessorData paramAsAccessor = this.accessors.getAccessorByClassName(paramType.getClassName());
+			if((paramAsAccessor != null && !this.isTypeInstanceof(localVarType, Type.getObjectType(paramAsAccessor.getAccessorClass().replace('.', '/')), hierarchy)) || (paramAsAccessor == null && !paramType.equals(localVarType))) {
+				throw new InvalidParameterTypeException(String.format("Import parameter %d of method %s#%s does not match. Current: %s, Expected: %s, or an accessor of that class. Local variable index: %d. Local variable identifier: %s", importData.getParameterIndex(), interceptor.getAccessorClass(), interceptor.getInterceptorMethod() + interceptor.getInterceptorMethodDesc(), paramType.getClassName(), Type.getType(importLocalVariable.desc).getClassName(), importLocalVariable.index, importData.getInstructionIdentifierId()), interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), importData.getParameterIndex(), paramType.getClassName(), Type.getType(importLocalVariable.desc).getClassName());
+			}
+			localVariables[i] = importLocalVariable;
+		}
+
+		boolean castReturn = false;
+		if(interceptor.isReturn()) {
+			Type returnType = Type.getReturnType(targetMethod.desc);
+			Type interceptorReturnType = Type.getReturnType(interceptor.getInterceptorMethodDesc());
+			ClassAccessorData paramAsAccessor = this.accessors.getAccessorByClassName(interceptorReturnType.getClassName());
+			if((paramAsAccessor != null && !this.isTypeInstanceof(returnType, Type.getObjectType(paramAsAccessor.getAccessorClass().replace('.', '/')), hierarchy)) || (paramAsAccessor == null && !returnType.equals(interceptorReturnType))) {
+				throw new InvalidReturnTypeException(String.format("Return type of method interceptor for method %s#%s does not match. Current: %s, Expected: %s, or an accessor of that class", interceptor.getAccessorClass(), interceptor.getInterceptorMethod() + interceptor.getInterceptorMethodDesc(), interceptorReturnType.getClassName(), returnType.getClassName()), null, interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), interceptorReturnType.getClassName(), returnType.getClassName());
+			}
+			//Interceptor return type is an accessor, cast to the intercepted method return type
+			castReturn = paramAsAccessor != null;
+		}
+
+		return new InterceptorTarget(interceptor, targetMethod, targetMethod.instructions.get(instructionIndex), jumpInstructionIndex == -1 ? null : targetMethod.instructions.get(jumpInstructionIndex), localVariables, castReturn);
+	}
+
+	/**
+	 * Checks whether the stack is empty at the specified jump target
+	 * @param clsNode
+	 * @param targetMethod
+	 * @param interceptor
+	 * @param jumpNodeIndex
+	 * @param frames The analyzed frames of the target methods
+	 */
+	private void checkJumpTarget(ClassNode clsNode, MethodNode targetMethod, MethodInterceptorData interceptor, int jumpNodeIndex, Map<MethodNode, Frame<BasicValue>[]> frames) {
+		try {
+			Frame<BasicValue>[] methodFrames = frames.get(targetMethod);
+			if(methodFrames == null) {
+				IJumpAnalysisEvent event = FlightRecorderSupport.newJumpAnalysisEvent();
+				if(event != null) {
+					event.begin();
+				}
+				Analyzer<BasicValue> a = new Analyzer<>(new BasicInterpreter());
+				frames.put(targetMethod, methodFrames = a.analyze(clsNode.name, targetMethod));
+				if(event != null && event.shouldCommit()) {
+					event.setMethod(clsNode.name, targetMethod.name, targetMethod.desc, targetMethod.instructions.size());
+					event.commit();
+				}
+			}
+			Frame<BasicValue> stackFrame = methodFrames[jumpNodeIndex];
+			if(stackFrame.getStackSize() > 0) {
+				StringBuilder stackStr = new StringBuilder();
+				stackStr.append("[");
+				for(int i = 0; i < stackFrame.getStackSize(); i++) {
+					stackStr.append(stackFrame.getStack(i).getType().getClassName());
+					if(i != stackFrame.getStackSize() - 1) {
+						stackStr.append(", ");
 					}
-					targetMethod = methodNode;
 				}
+				stackStr.append("]");
+				throw new InvalidJumpTargetException(String.format("Cannot insert jump target of %s#%s:%s at index %d. Stack must be empty. Current stack: %s", clsNode.name, targetMethod.name + targetMethod.desc, interceptor.getJumpInstructionIdentifierId(), jumpNodeIndex, stackStr.toString()), jumpNodeIndex, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getJumpInstructionIdentifierId(), interceptor.getJumpInstructionIdentifier());
+			}
+		} catch (AnalyzerException ex) {
+			throw new InvalidJumpTargetException(String.format("Cannot insert jump target of %s#%s:%s at index %d due to an unknown reason", clsNode.name, targetMethod.name + targetMethod.desc, interceptor.getJumpInstructionIdentifierId(), jumpNodeIndex), ex, jumpNodeIndex, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getJumpInstructionIdentifierId(), interceptor.getJumpInstructionIdentifier());
+		}
+	}
+
+	/**
+	 * Applies the specified {@link InstrumentationPlan} to the {@link ClassNode} it was created for
+	 * @param clsNode
+	 * @param plan
+	 */
+	public void applyPlan(ClassNode clsNode, InstrumentationPlan plan) {
+		//Instrument class body, the accessors are implemented in addition to the existing interfaces
+		List<String> interfaces = new ArrayList<>(clsNode.interfaces);
+		for(String itf : plan.getInterfaces()) {
+			if(!interfaces.contains(itf)) {
+				interfaces.add(itf);
+			}
+		}
+		clsNode.visit(clsNode.version, clsNode.access, clsNode.name, clsNode.signature, clsNode.superName, interfaces.toArray(new String[0]));
+
+		//Instrument accessor and interceptor methods
+		this.instrumentFieldAccessors(clsNode, plan);
+		this.instrumentFieldGenerators(clsNode, plan);
+		this.instrumentMethodAccessors(clsNode, plan);
+		this.instrumentMethodInterceptors(clsNode, plan);
+	}
+
+	/**
+	 * Instruments all planned field accessors
+	 * @param clsNode
+	 * @param plan
+	 */
+	private void instrumentFieldAccessors(ClassNode clsNode, InstrumentationPlan plan) {
+		for(FieldAccessorTarget target : plan.getFieldAccessors()) {
+			FieldAccessorData fieldAccessor = target.getFieldAccessor();
+			MethodNode accessorMethod = fieldAccessor.getAccessorMethod();
+			Type accessorReturnType = Type.getReturnType(accessorMethod.desc);
+			MethodVisitor mv = clsNode.visitMethod(Opcodes.ACC_PUBLIC, accessorMethod.name, 
+					accessorMethod.desc, 
+					fieldAccessor.isSetter() ? null : accessorReturnType.getDescriptor(), null);
+			if(fieldAccessor.isSetter()) {
+				this.instrumentFieldSetter(mv, clsNode, target.getFieldName(), target.getFieldDesc(), accessorMethod, target.getAccessorClass());
+			} else {
+				this.instrumentFieldGetter(mv, clsNode, target.getFieldName(), target.getFieldDesc(), accessorMethod, target.getAccessorClass());
 			}
-			if(targetMethod == null) {
-				throw new MethodNotFoundException(classAccessor.getAccessorClass(), new MethodDescription(methodAccessor.getAccessorMethod().name, accessorMethod.desc), methodAccessor.getIdentifierId(), identifier);
+		}
+	}
+
+	/**
+	 * Instruments all planned field generators
+	 * @param clsNode
+	 * @param plan
+	 */
+	private void instrumentFieldGenerators(ClassNode clsNode, InstrumentationPlan plan) {
+		for(FieldGeneratorTarget target : plan.getFieldGenerators()) {
+			FieldGeneratorData fieldGenerator = target.getFieldGenerator();
+			MethodNode accessorMethod = fieldGenerator.getAccessorMethod();
+			Type accessorReturnType = Type.getReturnType(accessorMethod.desc);
+			String fieldName = fieldGenerator.getFieldName();
+			String fieldDesc = fieldGenerator.getFieldType().getDescriptor();
+			if(target.isGenerateField()) {
+				clsNode.visitField(Opcodes.ACC_PUBLIC, fieldName, fieldDesc, null, null);
 			}
-			Set<String> accessorExceptions = new HashSet<>();
-			accessorExceptions.addAll(accessorMethod.exceptions);
-			Set<String> targetExceptions = new HashSet<>(targetMethod.exceptions);
-			if(!targetExceptions.equals(accessorExceptions)) {
-				String currExcp = Arrays.toString(accessorExceptions.toArray(new String[0]));
-				String expectedExcp = Arrays.toString(targetExceptions.toArray(new String[0]));
-				throw new InvalidMethodExceptionsException(String.format("Method accessor %s#%s exceptions do not match. Current: %s, Expected: %s", classAccessor.getAccessorClass(), accessorMethod.name + accessorMethod.desc, currExcp, expectedExcp), classAccessor.getAccessorClass(), new MethodDescription(accessorMethod.name, accessorMethod.desc), currExcp, expectedExcp);
+			MethodVisitor mv = clsNode.visitMethod(Opcodes.ACC_PUBLIC, accessorMethod.name, 
+					accessorMethod.desc, 
+					fieldGenerator.isSetter() ? null : accessorReturnType.getDescriptor(), null);
+			if(fieldGenerator.isSetter()) {
+				this.instrumentFieldSetter(mv, clsNode, fieldName, fieldDesc, accessorMethod, target.getAccessorClass());
+			} else {
+				this.instrumentFieldGetter(mv, clsNode, fieldName, fieldDesc, accessorMethod, target.getAccessorClass());
 			}
+		}
+	}
+
+	/**
+	 * Instruments all planned method accessors
+	 * @param clsNode
+	 * @param plan
+	 */
+	private void instrumentMethodAccessors(ClassNode clsNode, InstrumentationPlan plan) {
+		for(MethodAccessorTarget target : plan.getMethodAccessors()) {
+			MethodNode accessorMethod = target.getMethodAccessor().getAccessorMethod();
 			MethodVisitor mv = clsNode.visitMethod(Opcodes.ACC_PUBLIC, accessorMethod.name, 
 					accessorMethod.desc, 
-					accessorMethod.signature, targetExceptions.toArray(new String[0]));
-			this.instrumentMethodCaller(mv, clsNode, targetMethod, accessorMethod, (clsNode.access & Opcodes.ACC_INTERFACE) != 0);
+					accessorMethod.signature, target.getExceptions());
+			this.instrumentMethodCaller(mv, clsNode, target.getTargetMethod(), accessorMethod, (clsNode.access & Opcodes.ACC_INTERFACE) != 0);
 		}
 	}
 
@@ -563,125 +925,51 @@ public class BytecodeInstrumentation {
 	}
 
 	/**
-	 * Instruments all interceptors
-	 * @param interceptor
+	 * Instruments all planned interceptors
 	 * @param clsNode
+	 * @param plan
 	 */
-	private void instrumentMethodInterceptors(ClassNode clsNode, ClassAccessorData classAccessor) {
-		List<MethodInterceptorData> classInterceptors = new ArrayList<>();
-		for(MethodInterceptorData interceptor : classAccessor.getMethodInterceptors()) {
-			if(isIdentifiedClass(interceptor.getClassIdentifier(), clsNode.name)) {
-				classInterceptors.add(interceptor);
-			}
-		}
-
+	private void instrumentMethodInterceptors(ClassNode clsNode, InstrumentationPlan plan) {
 		//Implement setters and getters for LocalVars
-		for(MethodInterceptorData interceptor : classInterceptors) {
-			if(!interceptor.isReturn()) {
-				for(LocalVarData localVar : interceptor.getLocalVars()) {
-					Set<String> takenFieldNames = new HashSet<>();
-					for(FieldNode field : clsNode.fields) {
-						takenFieldNames.add(field.name);
-					}
-					String generatedField = getUniqueName(takenFieldNames);
-					Type fieldType = Type.getArgumentTypes(interceptor.getInterceptorMethodDesc())[localVar.getParameterIndex()];
-
-					clsNode.visitField(Opcodes.ACC_PRIVATE, generatedField, fieldType.getDescriptor(), null, null);
-
-					//Setter
-					MethodVisitor mvSetter = clsNode.visitMethod(Opcodes.ACC_PUBLIC, localVar.getGeneratedSetterMethod(), Type.getMethodDescriptor(Type.VOID_TYPE, Type.getArgumentTypes(localVar.getInterceptorMethodDesc())[localVar.getParameterIndex()]), null, null);
-					mvSetter.visitVarInsn(Opcodes.ALOAD, 0);
-					mvSetter.visitVarInsn(fieldType.getOpcode(Opcodes.ILOAD), 1);
-					mvSetter.visitFieldInsn(Opcodes.PUTFIELD, clsNode.name, generatedField, fieldType.getDescriptor());
-					mvSetter.visitInsn(Opcodes.RETURN);
-					mvSetter.visitEnd();
-
-					//Getter
-					MethodVisitor mvGetter = clsNode.visitMethod(Opcodes.ACC_PUBLIC, localVar.getGeneratedGetterMethod(), Type.getMethodDescriptor(Type.getArgumentTypes(localVar.getInterceptorMethodDesc())[localVar.getParameterIndex()]), null, null);
-					mvGetter.visitVarInsn(Opcodes.ALOAD, 0);
-					mvGetter.visitFieldInsn(Opcodes.GETFIELD, clsNode.name, generatedField, fieldType.getDescriptor());
-					mvGetter.visitInsn(fieldType.getOpcode(Opcodes.IRETURN));
-					mvGetter.visitEnd();
-				}
-			}
-		}
-
-		Map<MethodInterceptorData, Object[]> interceptorInsertions = new HashMap<>();
-
-		//Find insertion nodes for the interceptors
-		for(MethodInterceptorData interceptor : classInterceptors) {
-			MethodNode targetMethod = null;
-			IMethodIdentifier identifier = interceptor.getMethodIdentifier();
-			for(MethodNode method : clsNode.methods) {
-				if(isIdentifiedMethod(identifier, method)) {
-					if(targetMethod != null) {
-						throw new MultipleMethodsIdentifiedException(interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), interceptor.getMethodIdentifierId(), identifier);
-					}
-					targetMethod = method;
-				}
-			}
-			if(targetMethod == null) {
-				throw new MethodNotFoundException(interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), interceptor.getMethodIdentifierId(), identifier);
-			}
-
-			int instructionIndex = interceptor.getInstructionIdentifier().identify(targetMethod);
-			if(instructionIndex == -1) {
-				throw new InstructionNotFoundException(interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), interceptor.getInstructionIdentifierId(), interceptor.getInstructionIdentifier());
-			}
-			if(instructionIndex < 0 || instructionIndex >= targetMethod.instructions.size()) {
-				throw new InstructionOutOfBoundsException(String.format("Instruction index of %s#%s:%s is out of bounds. Current: %s, Expected: [%d, %d]", interceptor.getAccessorClass(), interceptor.getInterceptorMethod() + interceptor.getInterceptorMethodDesc(), interceptor.getInstructionIdentifierId(), instructionIndex, 0, targetMethod.instructions.size() - 1), null, instructionIndex, 0, targetMethod.instructions.size() - 1, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getInstructionIdentifierId(), interceptor.getInstructionIdentifier());
-			}
-
-			int jumpInstructionIndex = -1;
-			if(interceptor.getJumpInstructionIdentifier() != null) {
-				if(Type.getReturnType(interceptor.getInterceptorMethodDesc()) != Type.BOOLEAN_TYPE) {
-					throw new InvalidReturnTypeException(String.format("Return type of method interceptor %s#%s with instruction jump is not boolean", clsNode.name, targetMethod.name + targetMethod.desc), null, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), boolean.class.getName(), Type.getReturnType(interceptor.getInterceptorMethodDesc()).getClassName());
-				}
-				jumpInstructionIndex = interceptor.getJumpInstructionIdentifier().identify(targetMethod);
-				if(jumpInstructionIndex == -1) {
-					throw new JumpInstructionNotFoundException(clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getJumpInstructionIdentifierId(), interceptor.getJumpInstructionIdentifier());
-				}
-				if(jumpInstructionIndex < 0 || jumpInstructionIndex >= targetMethod.instructions.size()) {
-					throw new InstructionOutOfBoundsException(String.format("Instruction jump index of %s#%s:%s is out of bounds. Current: %s, Expected: [%d, %d]", clsNode.name, targetMethod.name + targetMethod.desc, interceptor.getJumpInstructionIdentifierId(), jumpInstructionIndex, 0, targetMethod.instructions.size() - 1), null, jumpInstructionIndex, 0, targetMethod.instructions.size() - 1, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getJumpInstructionIdentifierId(), interceptor.getJumpInstructionIdentifier());
-				}
-				if(jumpInstructionIndex <= instructionIndex) {
-					throw new InstructionOutOfBoundsException(String.format("Instruction jump index of %s#%s:%s must be after the interceptor instruction index. Current: %s, Expected: >%d", clsNode.name, targetMethod.name + targetMethod.desc, interceptor.getJumpInstructionIdentifierId(), jumpInstructionIndex, instructionIndex), null, jumpInstructionIndex, instructionIndex + 1, targetMethod.instructions.size() - 1, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptor.getJumpInstructionIdentifierId(), interceptor.getJumpInstructionIdentifier());
-				}
-			}
-
-			interceptorInsertions.put(interceptor, new Object[]{targetMethod, targetMethod.instructions.get(instructionIndex), jumpInstructionIndex == -1 ? null : targetMethod.instructions.get(jumpInstructionIndex)});
+		for(LocalVarField localVarField : plan.getLocalVarFields()) {
+			LocalVarData localVar = localVarField.getLocalVar();
+			String generatedField = localVarField.getFieldName();
+			Type fieldType = localVarField.getFieldType();
+
+			clsNode.visitField(Opcodes.ACC_PRIVATE, generatedField, fieldType.getDescriptor(), null, null);
+
+			//Setter
+			MethodVisitor mvSetter = clsNode.visitMethod(Opcodes.ACC_PUBLIC, localVar.getGeneratedSetterMethod(), Type.getMethodDescriptor(Type.VOID_TYPE, Type.getArgumentTypes(localVar.getInterceptorMethodDesc())[localVar.getParameterIndex()]), null, null);
+			mvSetter.visitVarInsn(Opcodes.ALOAD, 0);
+			mvSetter.visitVarInsn(fieldType.getOpcode(Opcodes.ILOAD), 1);
+			mvSetter.visitFieldInsn(Opcodes.PUTFIELD, clsNode.name, generatedField, fieldType.getDescriptor());
+			mvSetter.visitInsn(Opcodes.RETURN);
+			mvSetter.visitEnd();
+
+			//Getter
+			MethodVisitor mvGetter = clsNode.visitMethod(Opcodes.ACC_PUBLIC, localVar.getGeneratedGetterMethod(), Type.getMethodDescriptor(Type.getArgumentTypes(localVar.getInterceptorMethodDesc())[localVar.getParameterIndex()]), null, null);
+			mvGetter.visitVarInsn(Opcodes.ALOAD, 0);
+			mvGetter.visitFieldInsn(Opcodes.GETFIELD, clsNode.name, generatedField, fieldType.getDescriptor());
+			mvGetter.visitInsn(fieldType.getOpcode(Opcodes.IRETURN));
+			mvGetter.visitEnd();
 		}
 
 		//Insert instructions for the interceptors at the insertion node
-		for(Entry<MethodInterceptorData, Object[]> interceptorInsertion : interceptorInsertions.entrySet()) {
-			MethodInterceptorData interceptor = interceptorInsertion.getKey();
-			MethodNode targetMethod = (MethodNode) interceptorInsertion.getValue()[0];
-			AbstractInsnNode insertionNode = (AbstractInsnNode) interceptorInsertion.getValue()[1];
-			AbstractInsnNode jumpNode = (AbstractInsnNode) interceptorInsertion.getValue()[2];
+		for(InterceptorTarget target : plan.getInterceptors()) {
+			MethodInterceptorData interceptor = target.getInterceptor();
+			MethodNode targetMethod = target.getTargetMethod();
+			AbstractInsnNode jumpNode = target.getJumpNode();
+			List<LocalVarData> localVars = interceptor.getLocalVars();
+			LocalVariableNode[] localVariables = target.getLocalVariables();
 
 			InsnList insertions = new InsnList();
 
 			insertions.add(new VarInsnNode(Opcodes.ALOAD, 0));
 
 			//Load local variables
-			for(LocalVarData importData : interceptor.getLocalVars()) {
-				int importLocalVariableIndex = importData.getInstructionIdentifier().identify(targetMethod);
-				LocalVariableNode importLocalVariable = null;
-				for(LocalVariableNode localVar : targetMethod.localVariables) {
-					if(localVar.index == importLocalVariableIndex) {
-						importLocalVariable = localVar;
-					}
-				}
-				if(importLocalVariable == null) {
-					throw new ImportInstructionNotFoundException(importData.getParameterIndex(), interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), importData.getInstructionIdentifierId(), importData.getInstructionIdentifier());
-				}
-				Type localVarType = Type.getType(importLocalVariable.desc);
-				Type paramType = Type.getArgumentTypes(interceptor.getInterceptorMethodDesc())[importData.getParameterIndex()];
-				ClassAccessorData paramAsAccessor = this.accessors.getAccessorByClassName(paramType.getClassName());
-				if((paramAsAccessor != null && !this.isTypeInstanceof(localVarType, Type.getObjectType(paramAsAccessor.getAccessorClass().replace('.', '/')))) || (paramAsAccessor == null && !paramType.equals(localVarType))) {
-					throw new InvalidParameterTypeException(String.format("Import parameter %d of method %s#%s does not match. Current: %s, Expected: %s, or an accessor of that class. Local variable index: %d. Local variable identifier: %s", importData.getParameterIndex(), interceptor.getAccessorClass(), interceptor.getInterceptorMethod() + interceptor.getInterceptorMethodDesc(), paramType.getClassName(), Type.getType(importLocalVariable.desc).getClassName(), importLocalVariable.index, importData.getInstructionIdentifierId()), interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), importData.getParameterIndex(), paramType.getClassName(), Type.getType(importLocalVariable.desc).getClassName());
-				}
-				insertions.add(new VarInsnNode(paramType.getOpcode(Opcodes.ILOAD), importLocalVariable.index));
+			for(int i = 0; i < localVariables.length; i++) {
+				Type paramType = Type.getArgumentTypes(interceptor.getInterceptorMethodDesc())[localVars.get(i).getParameterIndex()];
+				insertions.add(new VarInsnNode(paramType.getOpcode(Opcodes.ILOAD), localVariables[i].index));
 			}
 
 			//Call interceptor method
@@ -690,30 +978,16 @@ public class BytecodeInstrumentation {
 			if(interceptor.isReturn()) {
 				//Add return instruction
 				Type returnType = Type.getReturnType(targetMethod.desc);
-				Type interceptorReturnType = Type.getReturnType(interceptor.getInterceptorMethodDesc());
-				ClassAccessorData paramAsAccessor = this.accessors.getAccessorByClassName(interceptorReturnType.getClassName());
-				if((paramAsAccessor != null && !this.isTypeInstanceof(returnType, Type.getObjectType(paramAsAccessor.getAccessorClass().replace('.', '/')))) || (paramAsAccessor == null && !returnType.equals(interceptorReturnType))) {
-					throw new InvalidReturnTypeException(String.format("Return type of method interceptor for method %s#%s does not match. Current: %s, Expected: %s, or an accessor of that class", interceptor.getAccessorClass(), interceptor.getInterceptorMethod() + interceptor.getInterceptorMethodDesc(), interceptorReturnType.getClassName(), returnType.getClassName()), null, interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), interceptorReturnType.getClassName(), returnType.getClassName());
-				}
-				if(paramAsAccessor != null) {
+				if(target.isCastReturn()) {
 					//Interceptor return type is an accessor, cast to the intercepted method return type
 					insertions.add(new TypeInsnNode(Opcodes.CHECKCAST, returnType.getDescriptor()));
 				}
 				insertions.add(new InsnNode(returnType.getOpcode(Opcodes.IRETURN)));
 			} else {
 				//Store local variables
-				for(LocalVarData importData : interceptor.getLocalVars()) {
-					int importLocalVariableIndex = importData.getInstructionIdentifier().identify(targetMethod);
-					LocalVariableNode importLocalVariable = null;
-					for(LocalVariableNode localVar : targetMethod.localVariables) {
-						if(localVar.index == importLocalVariableIndex) {
-							importLocalVariable = localVar;
-						}
-					}
-					if(importLocalVariable == null) {
-						throw new ImportInstructionNotFoundException(importData.getParameterIndex(), interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), importData.getInstructionIdentifierId(), importData.getInstructionIdentifier());
-					}
-					Type localVarType = Type.getType(importLocalVariable.desc);
+				for(int i = 0; i < localVariables.length; i++) {
+					LocalVarData importData = localVars.get(i);
+					Type localVarType = Type.getType(localVariables[i].desc);
 					Type paramType = Type.getArgumentTypes(importData.getInterceptorMethodDesc())[importData.getParameterIndex()];
 					insertions.add(new VarInsnNode(Opcodes.ALOAD, 0));
 					insertions.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, clsNode.name, importData.getGeneratedGetterMethod(), Type.getMethodDescriptor(paramType), false));
@@ -721,34 +995,12 @@ public class BytecodeInstrumentation {
 						//Parameter type is an accessor, cast to the local variable type
 						insertions.add(new TypeInsnNode(Opcodes.CHECKCAST, localVarType.getInternalName()));
 					}
-					insertions.add(new VarInsnNode(paramType.getOpcode(Opcodes.ISTORE), importLocalVariable.index));
+					insertions.add(new VarInsnNode(paramType.getOpcode(Opcodes.ISTORE), localVariables[i].index));
 				}
 
 				if(jumpNode != null) {
 					LabelNode jumpTarget = new LabelNode();
 
-					int jumpNodeIndex = targetMethod.instructions.indexOf(jumpNode);
-
-					Analyzer<BasicValue> a = new Analyzer<>(new BasicInterpreter());
-					try {
-						Frame<BasicValue>[] frames = a.analyze(clsNode.name, targetMethod);
-						Frame<BasicValue> stackFrame = frames[jumpNodeIndex];
-						if(stackFrame.getStackSize() > 0) {
-							StringBuilder stackStr = new StringBuilder();
-							stackStr.append("[");
-							for(int i = 0; i < stackFrame.getStackSize(); i++) {
-								stackStr.append(stackFrame.getStack(i).getType().getClassName());
-								if(i != stackFrame.getStackSize() - 1) {
-									stackStr.append(", ");
-								}
-							}
-							stackStr.append("]");
-							throw new InvalidJumpTargetException(String.format("Cannot insert jump target of %s#%s:%s at index %d. Stack must be empty. Current stack: %s", clsNode.name, targetMethod.name + targetMethod.desc, interceptorInsertion.getKey().getJumpInstructionIdentifierId(), jumpNodeIndex, stackStr.toString()), jumpNodeIndex, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptorInsertion.getKey().getJumpInstructionIdentifierId(), interceptorInsertion.getKey().getJumpInstructionIdentifier());
-						}
-					} catch (AnalyzerException ex) {
-						throw new InvalidJumpTargetException(String.format("Cannot insert jump target of %s#%s:%s at index %d due to an unknown reason", clsNode.name, targetMethod.name + targetMethod.desc, interceptorInsertion.getKey().getJumpInstructionIdentifierId(), jumpNodeIndex), ex, jumpNodeIndex, clsNode.name, new MethodDescription(targetMethod.name, targetMethod.desc), interceptorInsertion.getKey().getJumpInstructionIdentifierId(), interceptorInsertion.getKey().getJumpInstructionIdentifier());
-					}
-
 					//Insert jump target
 					targetMethod.instructions.insertBefore(jumpNode, jumpTarget);
 
@@ -757,7 +1009,7 @@ public class BytecodeInstrumentation {
 			}
 
 			//Insert instructions
-			targetMethod.instructions.insertBefore(insertionNode, insertions);
+			targetMethod.instructions.insertBefore(target.getInsertionNode(), insertions);
 		}
 	}
 
@@ -788,11 +1040,12 @@ public class BytecodeInstrumentation {
 	 * Checks if the method accessor parameters and return types are valid for the specified desc of the method
 	 * @param desc The desc of the original method
 	 * @param method The proxy method
+	 * @param hierarchy Resolves the class hierarchy through the class loader that defines the class
 	 * @return
 	 */
-	private boolean isMethodAccessorValid(String desc, MethodNode method) {
+	private boolean isMethodAccessorValid(String desc, MethodNode method, HierarchyLookup hierarchy) {
 		Type returnType = Type.getReturnType(desc);
-		if(!this.isTypeInstanceof(returnType, Type.getReturnType(method.desc))) {
+		if(!this.isTypeInstanceof(returnType, Type.getReturnType(method.desc), hierarchy)) {
 			return false;
 		}
 		Type[] methodParams = Type.getArgumentTypes(method.desc);
@@ -801,7 +1054,7 @@ public class BytecodeInstrumentation {
 			return false;
 		}
 		for(int i = 0; i < descParams.length; i++) {
-			if(!this.isTypeInstanceof(descParams[i], methodParams[i])) {
+			if(!this.isTypeInstanceof(descParams[i], methodParams[i], hierarchy)) {
 				return false;
 			}
 		}
@@ -812,20 +1065,22 @@ public class BytecodeInstrumentation {
 	 * Checks if the getter type is valid for the specified desc of the field
 	 * @param desc The desc of the original field
 	 * @param method The proxy method
+	 * @param hierarchy Resolves the class hierarchy through the class loader that defines the class
 	 * @return
 	 */
-	private boolean isGetterTypeValidForField(String desc, MethodNode method) {
-		return this.isTypeInstanceof(Type.getType(desc), Type.getReturnType(method.desc));
+	private boolean isGetterTypeValidForField(String desc, MethodNode method, HierarchyLookup hierarchy) {
+		return this.isTypeInstanceof(Type.getType(desc), Type.getReturnType(method.desc), hierarchy);
 	}
 
 	/**
 	 * Checks if the setter type is valid for the specified desc of the field
 	 * @param desc The desc of the original field
 	 * @param method The proxy method
+	 * @param hierarchy Resolves the class hierarchy through the class loader that defines the class
 	 * @return
 	 */
-	private boolean isSetterTypeValidForField(String desc, MethodNode method) {
-		return this.isTypeInstanceof(Type.getType(desc), Type.getArgumentTypes(method.desc)[0]);
+	private boolean isSetterTypeValidForField(String desc, MethodNode method, HierarchyLookup hierarchy) {
+		return this.isTypeInstanceof(Type.getType(desc), Type.getArgumentTypes(method.desc)[0], hierarchy);
 	}
 
 	/**
@@ -843,9 +1098,10 @@ public class BytecodeInstrumentation {
 	 * In case of arrays their elementary type is compared
 	 * @param type
 	 * @param otherType
+	 * @param hierarchy Resolves the class hierarchy through the class loader that defines the class
 	 * @return
 	 */
-	private boolean isTypeInstanceof(Type type, Type otherType) {
+	private boolean isTypeInstanceof(Type type, Type otherType, HierarchyLookup hierarchy) {
 		if(type.getSort() == Type.ARRAY && otherType.getSort() == Type.ARRAY) {
 			type = type.getElementType();
 			otherType = otherType.getElementType();
@@ -859,12 +1115,38 @@ public class BytecodeInstrumentation {
 			//Get accessor data of otherType, if otherType is an accessor
 			final ClassAccessorData accessorInstance = this.accessors.getAccessorByClassName(otherType.getClassName());
 
+			if(type.getInternalName().equals(otherType.getInternalName()) && !"java/lang/Object".equals(type.getInternalName())) {
+				return true;
+			}
+
 			IOException resolverException = null;
+			ClassLoader loader = hierarchy.loader;
+			if(!type.getInternalName().startsWith("java/")) {
+				//The hierarchy of java types is the same for all class loaders
+				hierarchy.isLoaderDependent = true;
+			}
+
+			try {
+				//Memoized supertype closure of type
+				BitSet supertypes = this.typeHierarchyCache.getSupertypeIds(loader, type.getInternalName());
+				if(this.typeHierarchyCache.isSubtype(loader, type.getInternalName(), otherType.getInternalName())) {
+					//type extends or implements otherType
+					return true;
+				}
+				if(accessorInstance != null && !"java/lang/Object".equals(type.getInternalName())) {
+					//Check if accessor is an accessor of this class or a superclass/-interface
+					return isIdentifiedClass(accessorInstance.getClassIdentifier(), type.getInternalName()) || this.isAnyClassIdentified(accessorInstance.getClassIdentifier(), loader, supertypes);
+				}
+				return false;
+			} catch(IOException ex) {
+				resolverException = ex;
+			}
 
 			final Type finalOtherType = otherType;
 
 			try {
-				ClassRelationResolver relation = new ClassRelationResolver(type.getInternalName());
+				//Fall back to traversing the hierarchy as far as it can be resolved
+				ClassRelationResolver relation = new ClassRelationResolver(type.getInternalName(), loader, this.typeHierarchyCache);
 				return relation.traverseSuperclasses(cls -> {
 					if(cls.equals(finalOtherType.getInternalName())) {
 						//type extends or implements otherType
@@ -894,6 +1176,48 @@ public class BytecodeInstrumentation {
 		return type.getClassName().equals(otherType.getClassName());
 	}
 
+	/**
+	 * Returns whether the class identifier identifies any of the specified types.
+	 * The result of the identifier is memoized for each type id of the class loader.
+	 * The identifier is called without holding a lock, concurrent callers may identify
+	 * the same type more than once
+	 * @param identifier
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param typeIds The ids of the types, see {@link TypeHierarchyCache#getTypeId(ClassLoader, String)}
+	 * @return
+	 */
+	private boolean isAnyClassIdentified(IClassIdentifier identifier, ClassLoader loader, BitSet typeIds) {
+		WeakLoaderMap<IdentifiedTypes> loaderTypes = this.identifiedTypes.computeIfAbsent(identifier, i -> new WeakLoaderMap<>());
+		IdentifiedTypes types = loaderTypes.get(loader);
+		BitSet unchecked = (BitSet) typeIds.clone();
+		if(types != null) {
+			if(types.identified.intersects(typeIds)) {
+				return true;
+			}
+			unchecked.andNot(types.checked);
+		}
+		if(unchecked.isEmpty()) {
+			return false;
+		}
+		BitSet identified = new BitSet();
+		for(int id = unchecked.nextSetBit(0); id >= 0; id = unchecked.nextSetBit(id + 1)) {
+			if(isIdentifiedClass(identifier, this.typeHierarchyCache.getTypeName(loader, id))) {
+				identified.set(id);
+			}
+		}
+		while(true) {
+			IdentifiedTypes current = loaderTypes.get(loader);
+			if(current == null) {
+				if(loaderTypes.putIfAbsent(loader, new IdentifiedTypes(unchecked, identified)) == null) {
+					break;
+				}
+			} else if(loaderTypes.replace(loader, current, current.with(unchecked, identified))) {
+				break;
+			}
+		}
+		return !identified.isEmpty();
+	}
+
 	/**
 	 * Returns whether the specified method is a generated method
 	 * @return
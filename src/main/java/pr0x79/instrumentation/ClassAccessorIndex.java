@@ -0,0 +1,191 @@
+package pr0x79.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import pr0x79.instrumentation.accessor.ClassAccessorData;
+import pr0x79.instrumentation.accessor.MethodInterceptorData;
+import pr0x79.instrumentation.identification.IClassIdentifier;
+
+/**
+ * Immutable index that maps internal class names to the
+ * {@link ClassAccessorData}s and {@link MethodInterceptorData}s targeting them.
+ * Static class identifiers are resolved by a single hash lookup, dynamic
+ * class identifiers are only consulted as a fallback and only for the classes
+ * that match their {@link IClassIdentifier#getCandidatePrefixes()}.
+ * Accessors and interceptors are always returned in registration order, regardless
+ * of whether they are targeted by a static or a dynamic class identifier
+ */
+public class ClassAccessorIndex {
+	private final Map<String, List<ClassAccessorData>> staticAccessors = new HashMap<>();
+	private final PrefixTrie<ClassAccessorData> dynamicAccessors = new PrefixTrie<>();
+	private final Map<String, List<MethodInterceptorData>> staticInterceptors = new HashMap<>();
+	private final PrefixTrie<MethodInterceptorData> dynamicInterceptors = new PrefixTrie<>();
+	private final Map<String, InstrumentationTemplate> staticTemplates = new HashMap<>();
+
+	//Registration order of all accessors and interceptors, interceptors are ordered after their accessor
+	private final Map<Object, Integer> registrationOrder = new IdentityHashMap<>();
+
+	/**
+	 * Creates a new index of the specified class accessors
+	 * @param accessors
+	 */
+	public ClassAccessorIndex(Collection<ClassAccessorData> accessors) {
+		for(ClassAccessorData accessor : accessors) {
+			this.registrationOrder.putIfAbsent(accessor, this.registrationOrder.size());
+			index(accessor.getClassIdentifier(), accessor, this.staticAccessors, this.dynamicAccessors);
+			for(MethodInterceptorData interceptor : accessor.getMethodInterceptors()) {
+				this.registrationOrder.putIfAbsent(interceptor, this.registrationOrder.size());
+				index(interceptor.getClassIdentifier(), interceptor, this.staticInterceptors, this.dynamicInterceptors);
+			}
+		}
+		//The static lists are returned as they are
+		this.staticAccessors.replaceAll((cls, values) -> Collections.unmodifiableList(values));
+		this.staticInterceptors.replaceAll((cls, values) -> Collections.unmodifiableList(values));
+
+		//Precompute the templates of all classes targeted by static class identifiers
+		Set<String> staticClasses = new HashSet<>(this.staticAccessors.keySet());
+		staticClasses.addAll(this.staticInterceptors.keySet());
+		for(String cls : staticClasses) {
+			List<ClassAccessorData> classAccessors = this.staticAccessors.get(cls);
+			List<MethodInterceptorData> classInterceptors = this.staticInterceptors.get(cls);
+			this.staticTemplates.put(cls, new InstrumentationTemplate(
+					classAccessors != null ? classAccessors : Collections.emptyList(),
+					classInterceptors != null ? classInterceptors : Collections.emptyList()));
+		}
+	}
+
+	private static <T> void index(IClassIdentifier identifier, T value, Map<String, List<T>> staticValues, PrefixTrie<T> dynamicValues) {
+		if(identifier == null) {
+			return;
+		}
+		if(identifier.isStatic()) {
+			for(String name : identifier.getClassNames()) {
+				List<T> values = staticValues.get(name);
+				if(values == null) {
+					staticValues.put(name, values = new ArrayList<>(1));
+				}
+				if(!values.contains(value)) {
+					values.add(value);
+				}
+			}
+		} else {
+			String[] prefixes = identifier.getCandidatePrefixes();
+			if(prefixes == null) {
+				dynamicValues.put("", value);
+			} else {
+				for(String prefix : prefixes) {
+					dynamicValues.put(prefix, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether any class accessor or method interceptor targets the specified class
+	 * @param cls The internal name of the class
+	 * @return
+	 */
+	public boolean acceptsClass(String cls) {
+		if(this.staticAccessors.containsKey(cls) || this.staticInterceptors.containsKey(cls)) {
+			return true;
+		}
+		return this.dynamicAccessors.anyMatch(cls, accessor -> accessor.getClassIdentifier().isIdentifiedClass(cls)) ||
+				this.dynamicInterceptors.anyMatch(cls, interceptor -> interceptor.getClassIdentifier().isIdentifiedClass(cls));
+	}
+
+	/**
+	 * Returns all class accessors that target the specified class
+	 * @param cls The internal name of the class
+	 * @return
+	 */
+	public List<ClassAccessorData> getClassAccessors(String cls) {
+		return collect(cls, this.staticAccessors, this.dynamicAccessors, accessor -> accessor.getClassIdentifier());
+	}
+
+	/**
+	 * Returns all method interceptors that target the specified class
+	 * @param cls The internal name of the class
+	 * @return
+	 */
+	public List<MethodInterceptorData> getMethodInterceptors(String cls) {
+		return collect(cls, this.staticInterceptors, this.dynamicInterceptors, interceptor -> interceptor.getClassIdentifier());
+	}
+
+	/**
+	 * Returns the {@link InstrumentationTemplate} for the specified class. If the class can
+	 * only be targeted by static class identifiers the precomputed template is returned
+	 * @param cls The internal name of the class
+	 * @return
+	 */
+	public InstrumentationTemplate getTemplate(String cls) {
+		if(!this.dynamicAccessors.matches(cls) && !this.dynamicInterceptors.matches(cls)) {
+			InstrumentationTemplate template = this.staticTemplates.get(cls);
+			if(template != null) {
+				return template;
+			}
+		}
+		return new InstrumentationTemplate(this.getClassAccessors(cls), this.getMethodInterceptors(cls));
+	}
+
+	private <T> List<T> collect(String cls, Map<String, List<T>> staticValues, PrefixTrie<T> dynamicValues, Function<T, IClassIdentifier> identifier) {
+		List<T> values = staticValues.get(cls);
+		if(!dynamicValues.matches(cls)) {
+			//The static lists are already unmodifiable
+			return values != null ? values : Collections.emptyList();
+		}
+		DynamicMatches<T> matches = new DynamicMatches<>(cls, identifier);
+		dynamicValues.anyMatch(cls, matches);
+		List<T> result = matches.result;
+		if(result == null) {
+			return values != null ? values : Collections.emptyList();
+		}
+		if(values != null) {
+			for(T value : values) {
+				if(!result.contains(value)) {
+					result.add(value);
+				}
+			}
+		}
+		//The trie visits the dynamic matches by prefix, the static and dynamic matches are merged in registration order
+		result.sort(Comparator.comparing(this.registrationOrder::get));
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Collects the dynamically identified values that target a class.
+	 * The result list is only allocated if any value matches
+	 * @param <T>
+	 */
+	private static final class DynamicMatches<T> implements Predicate<T> {
+		private final String cls;
+		private final Function<T, IClassIdentifier> identifier;
+		private List<T> result;
+
+		private DynamicMatches(String cls, Function<T, IClassIdentifier> identifier) {
+			this.cls = cls;
+			this.identifier = identifier;
+		}
+
+		@Override
+		public boolean test(T value) {
+			if((this.result == null || !this.result.contains(value)) && this.identifier.apply(value).isIdentifiedClass(this.cls)) {
+				if(this.result == null) {
+					this.result = new ArrayList<>(2);
+				}
+				this.result.add(value);
+			}
+			return false;
+		}
+	}
+}
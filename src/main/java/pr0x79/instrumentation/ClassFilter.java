@@ -0,0 +1,235 @@
+package pr0x79.instrumentation;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import pr0x79.Bootstrapper;
+import pr0x79.instrumentation.exception.InstrumentorException;
+
+/**
+ * Decides up front which classes are seen by the class transformer. Excluded classes are
+ * rejected before their class file is looked at, without any allocation. Classes can be excluded by
+ * <ul>
+ * <li>Their class loader, by default the bootstrap and the platform class loader are excluded</li>
+ * <li>Their package, by default <code>java/</code>, <code>jdk/</code>, <code>sun/</code>,
+ * <code>com/sun/</code> and <code>pr0x79/</code> are excluded</li>
+ * <li>The location of their code source, e.g. only the jars in <code>file:/app/lib/</code></li>
+ * </ul>
+ * Package and code source rules are matched by prefix, the rule with the longest matching prefix wins.
+ * Accessor classes are only filtered by their class loader and package, the code source rules
+ * don't apply to them so that they can be loaded from the agent or any other jar.
+ * The filter can only be changed during the initialization phase
+ */
+public class ClassFilter {
+	private final Bootstrapper bootstrapper;
+
+	//Rules by prefix, true if included
+	private final Map<String, Boolean> packageRules = new LinkedHashMap<>();
+	private final Map<String, Boolean> codeSourceRules = new LinkedHashMap<>();
+	private final List<ClassLoader> excludedLoaders = new ArrayList<>();
+	private boolean excludeBootstrapLoader = true;
+
+	private volatile Rules rules;
+
+	/**
+	 * Immutable snapshot of the rules that is evaluated by the class transformer
+	 */
+	private static final class Rules {
+		private final PrefixTrie<Boolean> packages = new PrefixTrie<>();
+		private final PrefixTrie<Boolean> codeSources = new PrefixTrie<>();
+		private final boolean includeUnknownCodeSources;
+		private final boolean excludeBootstrapLoader;
+		private final WeakReference<?>[] excludedLoaders;
+
+		//Decisions by code source, the location only has to be converted to a string once per code source
+		private final Map<CodeSource, Boolean> codeSourceDecisions = new ConcurrentHashMap<>();
+
+		private Rules(Map<String, Boolean> packageRules, Map<String, Boolean> codeSourceRules, List<ClassLoader> excludedLoaders, boolean excludeBootstrapLoader) {
+			for(Entry<String, Boolean> rule : packageRules.entrySet()) {
+				this.packages.put(rule.getKey(), rule.getValue());
+			}
+			for(Entry<String, Boolean> rule : codeSourceRules.entrySet()) {
+				this.codeSources.put(rule.getKey(), rule.getValue());
+			}
+			//If any code source is included, all other code sources are excluded
+			this.includeUnknownCodeSources = !codeSourceRules.containsValue(true);
+			this.excludeBootstrapLoader = excludeBootstrapLoader;
+			this.excludedLoaders = new WeakReference<?>[excludedLoaders.size()];
+			for(int i = 0; i < this.excludedLoaders.length; i++) {
+				this.excludedLoaders[i] = new WeakReference<>(excludedLoaders.get(i));
+			}
+		}
+
+		private boolean acceptsLoaderAndPackage(ClassLoader loader, String className) {
+			if(loader == null) {
+				if(this.excludeBootstrapLoader) {
+					return false;
+				}
+			} else {
+				for(WeakReference<?> excludedLoader : this.excludedLoaders) {
+					if(excludedLoader.get() == loader) {
+						return false;
+					}
+				}
+			}
+			if(className != null) {
+				Boolean included = this.packages.getLongestMatch(className);
+				if(included != null && !included) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean acceptsCodeSource(ProtectionDomain domain) {
+			CodeSource codeSource = domain != null ? domain.getCodeSource() : null;
+			if(codeSource == null) {
+				return this.includeUnknownCodeSources;
+			}
+			Boolean included = this.codeSourceDecisions.get(codeSource);
+			if(included == null) {
+				URL location = codeSource.getLocation();
+				included = location != null ? this.codeSources.getLongestMatch(location.toExternalForm()) : null;
+				if(included == null) {
+					included = this.includeUnknownCodeSources;
+				}
+				this.codeSourceDecisions.put(codeSource, included);
+			}
+			return included;
+		}
+	}
+
+	public ClassFilter(Bootstrapper bootstrapper) {
+		this.bootstrapper = bootstrapper;
+		//The extension class loader on Java 8, the platform class loader on Java 9 and later
+		ClassLoader platformLoader = ClassLoader.getSystemClassLoader().getParent();
+		if(platformLoader != null) {
+			this.excludedLoaders.add(platformLoader);
+		}
+		for(String excluded : new String[] { "java/", "jdk/", "sun/", "com/sun/", "pr0x79/" }) {
+			this.packageRules.put(excluded, false);
+		}
+		this.update();
+	}
+
+	/**
+	 * Includes all classes in the specified package, unless a longer excluded prefix matches
+	 * @param prefix The internal package name prefix, e.g. <code>com/example/</code>
+	 */
+	public synchronized void includePackage(String prefix) {
+		this.checkInitializing();
+		this.packageRules.put(prefix, true);
+		this.update();
+	}
+
+	/**
+	 * Excludes all classes in the specified package, unless a longer included prefix matches
+	 * @param prefix The internal package name prefix, e.g. <code>com/example/</code>
+	 */
+	public synchronized void excludePackage(String prefix) {
+		this.checkInitializing();
+		this.packageRules.put(prefix, false);
+		this.update();
+	}
+
+	/**
+	 * Includes all classes whose code source location starts with the specified prefix.
+	 * Once a code source is included, classes of all other code sources and classes
+	 * without a code source are excluded
+	 * @param locationPrefix The prefix of the code source URL, e.g. <code>file:/app/lib/</code>
+	 */
+	public synchronized void includeCodeSource(String locationPrefix) {
+		this.checkInitializing();
+		this.codeSourceRules.put(locationPrefix, true);
+		this.update();
+	}
+
+	/**
+	 * Excludes all classes whose code source location starts with the specified prefix
+	 * @param locationPrefix The prefix of the code source URL, e.g. <code>file:/app/lib/</code>
+	 */
+	public synchronized void excludeCodeSource(String locationPrefix) {
+		this.checkInitializing();
+		this.codeSourceRules.put(locationPrefix, false);
+		this.update();
+	}
+
+	/**
+	 * Excludes all classes defined by the specified class loader. The class loader
+	 * is only referenced weakly
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 */
+	public synchronized void excludeLoader(ClassLoader loader) {
+		this.checkInitializing();
+		if(loader == null) {
+			this.excludeBootstrapLoader = true;
+		} else if(!this.excludedLoaders.contains(loader)) {
+			this.excludedLoaders.add(loader);
+		}
+		this.update();
+	}
+
+	/**
+	 * Removes the exclusion of the specified class loader, e.g. to instrument
+	 * classes of the bootstrap class loader
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 */
+	public synchronized void includeLoader(ClassLoader loader) {
+		this.checkInitializing();
+		if(loader == null) {
+			this.excludeBootstrapLoader = false;
+		} else {
+			this.excludedLoaders.remove(loader);
+		}
+		this.update();
+	}
+
+	/**
+	 * Returns whether the specified class is seen by the class transformer
+	 * @param loader The class loader that defines the class, null for the bootstrap class loader
+	 * @param className The internal name of the class, can be null
+	 * @param domain The protection domain of the class, can be null
+	 * @return
+	 */
+	public boolean accepts(ClassLoader loader, String className, ProtectionDomain domain) {
+		Rules rules = this.rules;
+		return rules.acceptsLoaderAndPackage(loader, className) && rules.acceptsCodeSource(domain);
+	}
+
+	/**
+	 * Returns whether the specified class is accepted by the class loader and package rules
+	 * @param loader The class loader that defines the class, null for the bootstrap class loader
+	 * @param className The internal name of the class, can be null
+	 * @return
+	 */
+	public boolean acceptsLoaderAndPackage(ClassLoader loader, String className) {
+		return this.rules.acceptsLoaderAndPackage(loader, className);
+	}
+
+	/**
+	 * Returns whether the specified class is accepted by the code source rules
+	 * @param domain The protection domain of the class, can be null
+	 * @return
+	 */
+	public boolean acceptsCodeSource(ProtectionDomain domain) {
+		return this.rules.acceptsCodeSource(domain);
+	}
+
+	private void checkInitializing() {
+		if(!this.bootstrapper.isInitializing()) {
+			throw new InstrumentorException("The class filter can only be changed during the initialization phase");
+		}
+	}
+
+	private void update() {
+		this.rules = new Rules(this.packageRules, this.codeSourceRules, this.excludedLoaders, this.excludeBootstrapLoader);
+	}
+}
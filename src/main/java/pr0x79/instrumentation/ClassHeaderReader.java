@@ -0,0 +1,223 @@
+package pr0x79.instrumentation;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import pr0x79.instrumentation.TypeHierarchyCache.TypeHeader;
+
+/**
+ * Reads only the header of a class file, i.e. the access flags, the name,
+ * the super class and the interfaces, without parsing the class into a
+ * {@link org.objectweb.asm.ClassReader}. The class file is read up to the end of
+ * the interfaces table into a buffer that is reused by each thread, the fields,
+ * methods and attributes are never read. Only the constant pool entries referenced
+ * by the header are decoded
+ */
+public class ClassHeaderReader {
+	private static final int UTF8 = 1;
+	private static final int INTEGER = 3;
+	private static final int FLOAT = 4;
+	private static final int LONG = 5;
+	private static final int DOUBLE = 6;
+	private static final int CLASS = 7;
+	private static final int STRING = 8;
+	private static final int FIELDREF = 9;
+	private static final int METHODREF = 10;
+	private static final int INTERFACE_METHODREF = 11;
+	private static final int NAME_AND_TYPE = 12;
+	private static final int METHOD_HANDLE = 15;
+	private static final int METHOD_TYPE = 16;
+	private static final int DYNAMIC = 17;
+	private static final int INVOKE_DYNAMIC = 18;
+	private static final int MODULE = 19;
+	private static final int PACKAGE = 20;
+
+	private static final String[] NO_INTERFACES = new String[0];
+
+	private static final ThreadLocal<ClassHeaderReader> READERS = ThreadLocal.withInitial(ClassHeaderReader::new);
+
+	private byte[] buffer = new byte[4096];
+	private int[] offsets = new int[256];
+	private char[] chars = new char[128];
+	private InputStream is;
+	private int length;
+
+	private ClassHeaderReader() { }
+
+	/**
+	 * Reads the header of the class file from the specified stream. The stream is
+	 * not read past the interfaces table and is not closed
+	 * @param is The class file stream
+	 * @return
+	 * @throws IOException if the stream cannot be read or the class file is malformed
+	 */
+	public static TypeHeader read(InputStream is) throws IOException {
+		ClassHeaderReader reader = READERS.get();
+		reader.is = is;
+		reader.length = 0;
+		try {
+			return reader.readHeader();
+		} finally {
+			reader.is = null;
+		}
+	}
+
+	/**
+	 * Reads the header of the specified class file
+	 * @param classFile The class file bytes
+	 * @return
+	 * @throws IOException if the class file is malformed
+	 */
+	public static TypeHeader read(byte[] classFile) throws IOException {
+		ClassHeaderReader reader = READERS.get();
+		byte[] buffer = reader.buffer;
+		reader.buffer = classFile;
+		reader.length = classFile.length;
+		try {
+			return reader.readHeader();
+		} finally {
+			reader.buffer = buffer;
+		}
+	}
+
+	private TypeHeader readHeader() throws IOException {
+		this.require(10);
+		if(this.readInt(0) != 0xCAFEBABE) {
+			throw new IOException("Invalid class file magic");
+		}
+		int count = this.readUnsignedShort(8);
+		if(this.offsets.length < count) {
+			this.offsets = new int[count];
+		}
+		int offset = 10;
+		for(int i = 1; i < count; i++) {
+			this.require(offset + 3);
+			this.offsets[i] = offset;
+			switch(this.buffer[offset]) {
+			case UTF8:
+				offset += 3 + this.readUnsignedShort(offset + 1);
+				break;
+			case CLASS:
+			case STRING:
+			case METHOD_TYPE:
+			case MODULE:
+			case PACKAGE:
+				offset += 3;
+				break;
+			case METHOD_HANDLE:
+				offset += 4;
+				break;
+			case INTEGER:
+			case FLOAT:
+			case FIELDREF:
+			case METHODREF:
+			case INTERFACE_METHODREF:
+			case NAME_AND_TYPE:
+			case DYNAMIC:
+			case INVOKE_DYNAMIC:
+				offset += 5;
+				break;
+			case LONG:
+			case DOUBLE:
+				//Long and double entries take up two slots
+				offset += 9;
+				i++;
+				break;
+			default:
+				throw new IOException(String.format("Invalid constant pool tag %d", this.buffer[offset]));
+			}
+		}
+		this.require(offset + 8);
+		int access = this.readUnsignedShort(offset);
+		String name = this.readClass(this.readUnsignedShort(offset + 2), count);
+		int superIndex = this.readUnsignedShort(offset + 4);
+		String superName = superIndex == 0 ? null : this.readClass(superIndex, count);
+		int interfaceCount = this.readUnsignedShort(offset + 6);
+		offset += 8;
+		this.require(offset + 2 * interfaceCount);
+		String[] interfaces = interfaceCount == 0 ? NO_INTERFACES : new String[interfaceCount];
+		for(int i = 0; i < interfaceCount; i++) {
+			interfaces[i] = this.readClass(this.readUnsignedShort(offset + 2 * i), count);
+		}
+		return new TypeHeader(access, name, superName, interfaces);
+	}
+
+	/**
+	 * Makes sure that the first bytes of the class file up to the specified
+	 * offset have been read into the buffer
+	 * @param end
+	 * @throws IOException
+	 */
+	private void require(int end) throws IOException {
+		if(end <= this.length) {
+			return;
+		}
+		if(this.is == null) {
+			throw new IOException("Truncated class file");
+		}
+		if(end > this.buffer.length) {
+			byte[] buffer = new byte[Math.max(end, this.buffer.length * 2)];
+			System.arraycopy(this.buffer, 0, buffer, 0, this.length);
+			this.buffer = buffer;
+		}
+		while(this.length < end) {
+			int read = this.is.read(this.buffer, this.length, this.buffer.length - this.length);
+			if(read < 0) {
+				throw new IOException("Truncated class file");
+			}
+			this.length += read;
+		}
+	}
+
+	/**
+	 * Decodes the internal name of the class constant at the specified constant pool index
+	 * @param index
+	 * @param count The constant pool count
+	 * @return
+	 * @throws IOException
+	 */
+	private String readClass(int index, int count) throws IOException {
+		if(index <= 0 || index >= count || this.buffer[this.offsets[index]] != CLASS) {
+			throw new IOException(String.format("Invalid class constant %d", index));
+		}
+		int nameIndex = this.readUnsignedShort(this.offsets[index] + 1);
+		if(nameIndex <= 0 || nameIndex >= count || this.buffer[this.offsets[nameIndex]] != UTF8) {
+			throw new IOException(String.format("Invalid UTF8 constant %d", nameIndex));
+		}
+		return this.readUtf8(this.offsets[nameIndex] + 1);
+	}
+
+	/**
+	 * Decodes the modified UTF-8 string at the specified offset
+	 * @param offset The offset of the length of the string
+	 * @return
+	 */
+	private String readUtf8(int offset) {
+		int length = this.readUnsignedShort(offset);
+		if(this.chars.length < length) {
+			this.chars = new char[length];
+		}
+		int index = offset + 2;
+		int end = index + length;
+		int charCount = 0;
+		while(index < end) {
+			int b = this.buffer[index++];
+			if((b & 0x80) == 0) {
+				this.chars[charCount++] = (char) (b & 0x7F);
+			} else if((b & 0xE0) == 0xC0) {
+				this.chars[charCount++] = (char) (((b & 0x1F) << 6) + (this.buffer[index++] & 0x3F));
+			} else {
+				this.chars[charCount++] = (char) (((b & 0xF) << 12) + ((this.buffer[index++] & 0x3F) << 6) + (this.buffer[index++] & 0x3F));
+			}
+		}
+		return new String(this.chars, 0, charCount);
+	}
+
+	private int readUnsignedShort(int offset) {
+		return ((this.buffer[offset] & 0xFF) << 8) | (this.buffer[offset + 1] & 0xFF);
+	}
+
+	private int readInt(int offset) {
+		return ((this.buffer[offset] & 0xFF) << 24) | ((this.buffer[offset + 1] & 0xFF) << 16) | ((this.buffer[offset + 2] & 0xFF) << 8) | (this.buffer[offset + 3] & 0xFF);
+	}
+}
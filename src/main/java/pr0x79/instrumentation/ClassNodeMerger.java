@@ -0,0 +1,369 @@
+package pr0x79.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LocalVariableAnnotationNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Writes an instrumented {@link ClassNode} by replaying the original class from
+ * its {@link ClassReader} into a {@link ClassWriter} that was created with that reader.
+ * Methods that were not modified are copied byte for byte by ASM without being
+ * parsed again and without recomputing their frames and maxs, only modified and added
+ * methods are written from the {@link ClassNode}, as well as added fields and attributes.
+ * If the class was read with {@link ClassReader#EXPAND_FRAMES} the frames are detached
+ * from the methods while the class is instrumented and are written again with the modified methods.
+ * The labels that ASM only creates for frames, i.e. the offsets of frames and of the <code>NEW</code>
+ * instructions of uninitialized frame values, are detached as well. Instruction indices are
+ * therefore the same as with {@link ClassReader#SKIP_FRAMES}, see {@link #read(ClassReader)}.
+ * The merger must be created before the class node is instrumented
+ */
+public class ClassNodeMerger {
+	private final ClassNode clsNode;
+	private final int fieldCount, methodCount, attributeCount;
+	private final Map<MethodNode, Integer> instructionCounts = new IdentityHashMap<>();
+	private final Map<MethodNode, Map<LabelNode, FrameNode>> frames = new IdentityHashMap<>();
+	//Detached labels that are only referenced by frames, mapped to the node they precede
+	private final Map<MethodNode, Map<LabelNode, AbstractInsnNode>> frameLabels = new IdentityHashMap<>();
+
+	/**
+	 * Records the current state of the specified class node and detaches its frames
+	 * @param clsNode The class node as read from the original class
+	 */
+	public ClassNodeMerger(ClassNode clsNode) {
+		this.clsNode = clsNode;
+		this.fieldCount = clsNode.fields.size();
+		this.methodCount = clsNode.methods.size();
+		this.attributeCount = clsNode.attrs == null ? 0 : clsNode.attrs.size();
+		for(MethodNode method : clsNode.methods) {
+			Map<LabelNode, FrameNode> methodFrames = detachFrames(method);
+			if(!methodFrames.isEmpty()) {
+				this.frames.put(method, methodFrames);
+				//Labels that are only referenced by frames only exist if the method has frames
+				Map<LabelNode, AbstractInsnNode> methodLabels = detachFrameLabels(method);
+				if(!methodLabels.isEmpty()) {
+					this.frameLabels.put(method, methodLabels);
+				}
+			}
+			this.instructionCounts.put(method, method.instructions.size());
+		}
+	}
+
+	/**
+	 * Reads the specified class into a class node that can be instrumented and creates the merger of it.
+	 * The existing frames are kept so that they don't have to be recomputed, but the instructions of
+	 * the class node are the same as if it was read with {@link ClassReader#SKIP_FRAMES}. All paths
+	 * that identify and instrument classes must read them with this method, so that index based
+	 * {@link pr0x79.instrumentation.identification.IInstructionIdentifier}s identify the same instructions
+	 * @param classReader The reader of the original class
+	 * @return
+	 */
+	public static ClassNodeMerger read(ClassReader classReader) {
+		ClassNode clsNode = new ClassNode();
+		classReader.accept(clsNode, ClassReader.EXPAND_FRAMES);
+		return new ClassNodeMerger(clsNode);
+	}
+
+	/**
+	 * Returns the class node of this merger
+	 * @return
+	 */
+	public ClassNode getClassNode() {
+		return this.clsNode;
+	}
+
+	/**
+	 * Removes all frames from the specified method. A frame is always preceded by
+	 * the label of its offset, the frames are mapped to that label
+	 * @param method
+	 * @return
+	 */
+	private static Map<LabelNode, FrameNode> detachFrames(MethodNode method) {
+		Map<LabelNode, FrameNode> frames = new IdentityHashMap<>();
+		LabelNode label = null;
+		AbstractInsnNode node = method.instructions.getFirst();
+		while(node != null) {
+			AbstractInsnNode next = node.getNext();
+			if(node.getType() == AbstractInsnNode.LABEL) {
+				label = (LabelNode) node;
+			} else if(node.getType() == AbstractInsnNode.FRAME) {
+				frames.put(label, (FrameNode) node);
+				method.instructions.remove(node);
+			}
+			node = next;
+		}
+		return frames;
+	}
+
+	/**
+	 * Removes all labels from the specified method that are not referenced by any instruction, try catch block,
+	 * line number or local variable, i.e. the labels ASM only creates for the frames
+	 * @param method
+	 * @return The removed labels mapped to the node that followed them
+	 */
+	private static Map<LabelNode, AbstractInsnNode> detachFrameLabels(MethodNode method) {
+		Set<LabelNode> referenced = Collections.newSetFromMap(new IdentityHashMap<>());
+		for(AbstractInsnNode node = method.instructions.getFirst(); node != null; node = node.getNext()) {
+			switch(node.getType()) {
+			case AbstractInsnNode.JUMP_INSN:
+				referenced.add(((JumpInsnNode) node).label);
+				break;
+			case AbstractInsnNode.TABLESWITCH_INSN:
+				referenced.add(((TableSwitchInsnNode) node).dflt);
+				referenced.addAll(((TableSwitchInsnNode) node).labels);
+				break;
+			case AbstractInsnNode.LOOKUPSWITCH_INSN:
+				referenced.add(((LookupSwitchInsnNode) node).dflt);
+				referenced.addAll(((LookupSwitchInsnNode) node).labels);
+				break;
+			case AbstractInsnNode.LINE:
+				referenced.add(((LineNumberNode) node).start);
+				break;
+			default:
+				break;
+			}
+		}
+		for(TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
+			referenced.add(tryCatchBlock.start);
+			referenced.add(tryCatchBlock.end);
+			referenced.add(tryCatchBlock.handler);
+		}
+		if(method.localVariables != null) {
+			for(LocalVariableNode localVariable : method.localVariables) {
+				referenced.add(localVariable.start);
+				referenced.add(localVariable.end);
+			}
+		}
+		addLabels(referenced, method.visibleLocalVariableAnnotations);
+		addLabels(referenced, method.invisibleLocalVariableAnnotations);
+
+		Map<LabelNode, AbstractInsnNode> labels = new IdentityHashMap<>();
+		List<LabelNode> pending = new ArrayList<>();
+		AbstractInsnNode node = method.instructions.getFirst();
+		while(node != null) {
+			AbstractInsnNode next = node.getNext();
+			if(node.getType() == AbstractInsnNode.LABEL && !referenced.contains(node)) {
+				pending.add((LabelNode) node);
+				method.instructions.remove(node);
+			} else if(!pending.isEmpty()) {
+				for(LabelNode label : pending) {
+					labels.put(label, node);
+				}
+				pending.clear();
+			}
+			node = next;
+		}
+		for(LabelNode label : pending) {
+			labels.put(label, null);
+		}
+		return labels;
+	}
+
+	private static void addLabels(Set<LabelNode> labels, List<LocalVariableAnnotationNode> annotations) {
+		if(annotations != null) {
+			for(LocalVariableAnnotationNode annotation : annotations) {
+				labels.addAll(annotation.start);
+				labels.addAll(annotation.end);
+			}
+		}
+	}
+
+	/**
+	 * Inserts the detached labels back into the specified method, directly before the node that followed them.
+	 * Instrumentation only inserts instructions, so that node is still part of the method.
+	 * Must be called before the frames are reattached
+	 * @param method
+	 */
+	private void reattachFrameLabels(MethodNode method) {
+		Map<LabelNode, AbstractInsnNode> methodLabels = this.frameLabels.remove(method);
+		if(methodLabels != null) {
+			for(Map.Entry<LabelNode, AbstractInsnNode> label : methodLabels.entrySet()) {
+				if(label.getValue() == null) {
+					method.instructions.add(label.getKey());
+				} else {
+					method.instructions.insertBefore(label.getValue(), label.getKey());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inserts the detached frames back into the specified method, directly after the label
+	 * of their offset. Instructions inserted before a label are therefore placed before
+	 * the frame of the label, instructions inserted after a label are placed after its frame
+	 * @param method
+	 */
+	private void reattachFrames(MethodNode method) {
+		Map<LabelNode, FrameNode> methodFrames = this.frames.remove(method);
+		if(methodFrames != null) {
+			for(Map.Entry<LabelNode, FrameNode> frame : methodFrames.entrySet()) {
+				if(frame.getKey() == null) {
+					method.instructions.insert(frame.getValue());
+				} else {
+					method.instructions.insert(frame.getKey(), frame.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the frames of the modified and added methods have to be computed.
+	 * Instrumentation that only inserts straight line code keeps the original frames valid,
+	 * the frames only have to be computed if a method contains a branch target or
+	 * unreachable code without a frame, e.g. due to an inserted jump or return.
+	 * Must be called before {@link #merge(ClassReader, ClassWriter)}
+	 * @return
+	 */
+	public boolean requiresFrameComputation() {
+		if((this.clsNode.version & 0xFFFF) < Opcodes.V1_6) {
+			//No frames before Java 6
+			return false;
+		}
+		for(MethodNode method : this.clsNode.methods) {
+			if(isModified(method) && !hasValidFrames(method)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether all branch targets and all instructions that follow an unconditional
+	 * branch of the specified method have a detached frame
+	 * @param method
+	 * @return
+	 */
+	private boolean hasValidFrames(MethodNode method) {
+		Map<LabelNode, FrameNode> methodFrames = this.frames.getOrDefault(method, Collections.emptyMap());
+		for(TryCatchBlockNode tryCatchBlock : method.tryCatchBlocks) {
+			if(!methodFrames.containsKey(tryCatchBlock.handler)) {
+				return false;
+			}
+		}
+		boolean reachable = true;
+		for(AbstractInsnNode node = method.instructions.getFirst(); node != null; node = node.getNext()) {
+			switch(node.getType()) {
+			case AbstractInsnNode.LABEL:
+				if(methodFrames.containsKey(node)) {
+					reachable = true;
+				}
+				continue;
+			case AbstractInsnNode.LINE:
+			case AbstractInsnNode.FRAME:
+				continue;
+			default:
+				break;
+			}
+			if(!reachable) {
+				return false;
+			}
+			switch(node.getType()) {
+			case AbstractInsnNode.JUMP_INSN:
+				if(!methodFrames.containsKey(((JumpInsnNode) node).label)) {
+					return false;
+				}
+				reachable = node.getOpcode() != Opcodes.GOTO;
+				break;
+			case AbstractInsnNode.TABLESWITCH_INSN:
+				TableSwitchInsnNode tableSwitch = (TableSwitchInsnNode) node;
+				if(!methodFrames.containsKey(tableSwitch.dflt) || !methodFrames.keySet().containsAll(tableSwitch.labels)) {
+					return false;
+				}
+				reachable = false;
+				break;
+			case AbstractInsnNode.LOOKUPSWITCH_INSN:
+				LookupSwitchInsnNode lookupSwitch = (LookupSwitchInsnNode) node;
+				if(!methodFrames.containsKey(lookupSwitch.dflt) || !methodFrames.keySet().containsAll(lookupSwitch.labels)) {
+					return false;
+				}
+				reachable = false;
+				break;
+			default:
+				int opcode = node.getOpcode();
+				reachable = !((opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) || opcode == Opcodes.ATHROW);
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the specified method was modified since the merger was created.
+	 * Instrumentation only ever inserts instructions, so a method is modified if its
+	 * instruction count has changed
+	 * @param method
+	 * @return
+	 */
+	private boolean isModified(MethodNode method) {
+		Integer count = this.instructionCounts.get(method);
+		return count == null || count != method.instructions.size();
+	}
+
+	/**
+	 * Writes the class node into the class writer
+	 * @param classReader The reader of the original class
+	 * @param classWriter A class writer that was created with the specified class reader
+	 */
+	public void merge(ClassReader classReader, ClassWriter classWriter) {
+		classReader.accept(new ClassVisitor(Opcodes.ASM9, classWriter) {
+			private int methodIndex = 0;
+
+			@Override
+			public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+				//The header may have been changed by the instrumentation
+				ClassNode clsNode = ClassNodeMerger.this.clsNode;
+				super.visit(clsNode.version, clsNode.access, clsNode.name, clsNode.signature, clsNode.superName, clsNode.interfaces.toArray(new String[0]));
+			}
+
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				MethodNode method = ClassNodeMerger.this.clsNode.methods.get(this.methodIndex++);
+				if(isModified(method)) {
+					reattachFrameLabels(method);
+					reattachFrames(method);
+					method.accept(this.cv);
+					return null;
+				}
+				//The method visitor of the writer causes ASM to copy the method as is
+				return super.visitMethod(access, name, descriptor, signature, exceptions);
+			}
+
+			@Override
+			public void visitEnd() {
+				ClassNode clsNode = ClassNodeMerger.this.clsNode;
+				if(clsNode.attrs != null) {
+					for(int i = ClassNodeMerger.this.attributeCount; i < clsNode.attrs.size(); i++) {
+						this.cv.visitAttribute(clsNode.attrs.get(i));
+					}
+				}
+				for(int i = ClassNodeMerger.this.fieldCount; i < clsNode.fields.size(); i++) {
+					clsNode.fields.get(i).accept(this.cv);
+				}
+				for(int i = ClassNodeMerger.this.methodCount; i < clsNode.methods.size(); i++) {
+					clsNode.methods.get(i).accept(this.cv);
+				}
+				super.visitEnd();
+			}
+		}, 0);
+	}
+}
@@ -1,14 +1,16 @@
 package pr0x79.instrumentation;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.function.Function;
 
-import org.objectweb.asm.ClassReader;
+import pr0x79.instrumentation.TypeHierarchyCache.TypeHeader;
 
 public class ClassRelationResolver {
 	private final ClassLoader loader;
-	private final ClassReader cls;
+	private final TypeHierarchyCache cache;
+	private final TypeHeader cls;
 
 	/**
 	 * Creates a new class relation resolver
@@ -16,38 +18,47 @@ public class ClassRelationResolver {
 	 * @throws IOException
 	 */
 	public ClassRelationResolver(String cls) throws IOException {
-		this.loader = ClassRelationResolver.class.getClassLoader();
+		this(cls, ClassRelationResolver.class.getClassLoader(), new TypeHierarchyCache());
+	}
+
+	/**
+	 * Creates a new class relation resolver that resolves the classes as seen by the
+	 * specified class loader through the specified cache
+	 * @param cls The internal name of the class
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param cache The type hierarchy cache
+	 * @throws IOException
+	 */
+	public ClassRelationResolver(String cls, ClassLoader loader, TypeHierarchyCache cache) throws IOException {
+		this.loader = loader;
+		this.cache = cache;
 		this.cls = this.readClass(cls);
 	}
 
 	/**
-	 * Reads a class into a {@link ClassReader}
+	 * Reads the header of a class
 	 * @param cls The internal name of the class
 	 * @return
 	 * @throws IOException
 	 */
-	private ClassReader readClass(String cls) throws IOException {
-		InputStream is = this.loader.getResourceAsStream(cls + ".class");
-		try {
-			return new ClassReader(is);
-		} finally {
-			is.close();
-		}
+	private TypeHeader readClass(String cls) throws IOException {
+		return this.cache.getHeader(this.loader, cls);
 	}
 
 	/**
-	 * Traverses all superclasses in BFS order
+	 * Traverses all superclasses in BFS order. The supertypes of each
+	 * interface are only traversed once
 	 * @param traverser
 	 * @param traverseInterfaces
 	 * @throws IOException 
 	 */
 	public boolean traverseSuperclasses(Function<String, Boolean> traverser, boolean traverseInterfaces) throws IOException {
-		return this.traverseSuperclasses(this.cls, traverser, traverseInterfaces);
+		return this.traverseSuperclasses(this.cls, traverser, traverseInterfaces, new HashSet<>());
 	}
 
-	private boolean traverseSuperclasses(ClassReader cls, Function<String, Boolean> traverser, boolean traverseInterfaces) throws IOException {
-		String type = cls.getClassName();
-		ClassReader info = cls;
+	private boolean traverseSuperclasses(TypeHeader cls, Function<String, Boolean> traverser, boolean traverseInterfaces, Set<String> visitedInterfaces) throws IOException {
+		String type = cls.getName();
+		TypeHeader info = cls;
 		while (!"java/lang/Object".equals(type)) {
 			if(traverser.apply(type)) return true;
 			if(traverseInterfaces) {
@@ -56,7 +67,7 @@ public class ClassRelationResolver {
 					if(traverser.apply(itf)) return true;
 				}
 				for(String itf : itfs) {
-					if(this.traverseSuperclasses(this.readClass(itf), traverser, true)) return true;
+					if(visitedInterfaces.add(itf) && this.traverseSuperclasses(this.readClass(itf), traverser, true, visitedInterfaces)) return true;
 				}
 			}
 			type = info.getSuperName();
@@ -0,0 +1,107 @@
+package pr0x79.instrumentation;
+
+/**
+ * Scans the constant pool of a raw class file without
+ * parsing the class into a {@link org.objectweb.asm.ClassReader}
+ */
+public class ConstantPoolScanner {
+	private static final int UTF8 = 1;
+	private static final int INTEGER = 3;
+	private static final int FLOAT = 4;
+	private static final int LONG = 5;
+	private static final int DOUBLE = 6;
+	private static final int CLASS = 7;
+	private static final int STRING = 8;
+	private static final int FIELDREF = 9;
+	private static final int METHODREF = 10;
+	private static final int INTERFACE_METHODREF = 11;
+	private static final int NAME_AND_TYPE = 12;
+	private static final int METHOD_HANDLE = 15;
+	private static final int METHOD_TYPE = 16;
+	private static final int DYNAMIC = 17;
+	private static final int INVOKE_DYNAMIC = 18;
+	private static final int MODULE = 19;
+	private static final int PACKAGE = 20;
+
+	private ConstantPoolScanner() { }
+
+	/**
+	 * Returns whether the constant pool of the specified class file contains
+	 * a UTF8 entry that is equal to the specified (modified UTF-8 encoded) bytes.
+	 * Returns false if the class file is malformed
+	 * @param classFile The class file bytes
+	 * @param utf8 The encoded UTF8 entry
+	 * @return
+	 */
+	public static boolean containsUtf8(byte[] classFile, byte[] utf8) {
+		if(classFile == null || classFile.length < 10 || readInt(classFile, 0) != 0xCAFEBABE) {
+			return false;
+		}
+		int count = readUnsignedShort(classFile, 8);
+		int offset = 10;
+		for(int i = 1; i < count; i++) {
+			if(offset >= classFile.length) {
+				return false;
+			}
+			int tag = classFile[offset];
+			switch(tag) {
+			case UTF8:
+				if(offset + 3 > classFile.length) {
+					return false;
+				}
+				int length = readUnsignedShort(classFile, offset + 1);
+				if(length == utf8.length && offset + 3 + length <= classFile.length && regionEquals(classFile, offset + 3, utf8)) {
+					return true;
+				}
+				offset += 3 + length;
+				break;
+			case CLASS:
+			case STRING:
+			case METHOD_TYPE:
+			case MODULE:
+			case PACKAGE:
+				offset += 3;
+				break;
+			case METHOD_HANDLE:
+				offset += 4;
+				break;
+			case INTEGER:
+			case FLOAT:
+			case FIELDREF:
+			case METHODREF:
+			case INTERFACE_METHODREF:
+			case NAME_AND_TYPE:
+			case DYNAMIC:
+			case INVOKE_DYNAMIC:
+				offset += 5;
+				break;
+			case LONG:
+			case DOUBLE:
+				//Long and double entries take up two slots
+				offset += 9;
+				i++;
+				break;
+			default:
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private static boolean regionEquals(byte[] bytes, int offset, byte[] other) {
+		for(int i = 0; i < other.length; i++) {
+			if(bytes[offset + i] != other[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int readUnsignedShort(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+	}
+
+	private static int readInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+	}
+}
@@ -31,67 +31,101 @@
 package pr0x79.instrumentation;
 
 import java.io.IOException;
-import java.io.InputStream;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 
+import pr0x79.instrumentation.TypeHierarchyCache.TypeHeader;
+
 /**
  * A ClassWriter that computes the common super class of two classes without
  * actually loading them with a ClassLoader.
+ * The class headers and the common super classes are cached in a {@link TypeHierarchyCache}
  */
 public class InstrumentationClassWriter extends ClassWriter {
-	private ClassLoader l = getClass().getClassLoader();
+	private final ClassLoader l;
+	private final TypeHierarchyCache cache;
 
 	public InstrumentationClassWriter(final int flags) {
+		this(flags, new TypeHierarchyCache(), InstrumentationClassWriter.class.getClassLoader());
+	}
+
+	/**
+	 * @param flags
+	 * @param cache The type hierarchy cache
+	 * @param loader The class loader that defines the written class, or null for the bootstrap class loader
+	 */
+	public InstrumentationClassWriter(final int flags, final TypeHierarchyCache cache, final ClassLoader loader) {
 		super(flags);
+		this.cache = cache;
+		this.l = loader;
+	}
+
+	public InstrumentationClassWriter(final ClassReader classReader, final int flags) {
+		this(classReader, flags, new TypeHierarchyCache(), InstrumentationClassWriter.class.getClassLoader());
+	}
+
+	/**
+	 * @param classReader
+	 * @param flags
+	 * @param cache The type hierarchy cache
+	 * @param loader The class loader that defines the written class, or null for the bootstrap class loader
+	 */
+	public InstrumentationClassWriter(final ClassReader classReader, final int flags, final TypeHierarchyCache cache, final ClassLoader loader) {
+		super(classReader, flags);
+		this.cache = cache;
+		this.l = loader;
 	}
 
 	@Override
 	protected String getCommonSuperClass(final String type1, final String type2) {
 		try {
-			ClassReader info1 = typeInfo(type1);
-			ClassReader info2 = typeInfo(type2);
-			if ((info1.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
-				if (typeImplements(type2, info2, type1)) {
-					return type1;
-				} else {
-					return "java/lang/Object";
-				}
+			return cache.getCommonSuperClass(l, type1, type2, this::resolveCommonSuperClass);
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString());
+		}
+	}
+
+	private String resolveCommonSuperClass(final String type1, final String type2) throws IOException {
+		TypeHeader info1 = typeInfo(type1);
+		TypeHeader info2 = typeInfo(type2);
+		if ((info1.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
+			if (typeImplements(type2, info2, type1)) {
+				return type1;
+			} else {
+				return "java/lang/Object";
 			}
-			if ((info2.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
-				if (typeImplements(type1, info1, type2)) {
-					return type2;
-				} else {
-					return "java/lang/Object";
-				}
+		}
+		if ((info2.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
+			if (typeImplements(type1, info1, type2)) {
+				return type2;
+			} else {
+				return "java/lang/Object";
 			}
-			StringBuilder b1 = typeAncestors(type1, info1);
-			StringBuilder b2 = typeAncestors(type2, info2);
-			String result = "java/lang/Object";
-			int end1 = b1.length();
-			int end2 = b2.length();
-			while (true) {
-				int start1 = b1.lastIndexOf(";", end1 - 1);
-				int start2 = b2.lastIndexOf(";", end2 - 1);
-				if (start1 != -1 && start2 != -1
-						&& end1 - start1 == end2 - start2) {
-					String p1 = b1.substring(start1 + 1, end1);
-					String p2 = b2.substring(start2 + 1, end2);
-					if (p1.equals(p2)) {
-						result = p1;
-						end1 = start1;
-						end2 = start2;
-					} else {
-						return result;
-					}
+		}
+		StringBuilder b1 = typeAncestors(type1, info1);
+		StringBuilder b2 = typeAncestors(type2, info2);
+		String result = "java/lang/Object";
+		int end1 = b1.length();
+		int end2 = b2.length();
+		while (true) {
+			int start1 = b1.lastIndexOf(";", end1 - 1);
+			int start2 = b2.lastIndexOf(";", end2 - 1);
+			if (start1 != -1 && start2 != -1
+					&& end1 - start1 == end2 - start2) {
+				String p1 = b1.substring(start1 + 1, end1);
+				String p2 = b2.substring(start2 + 1, end2);
+				if (p1.equals(p2)) {
+					result = p1;
+					end1 = start1;
+					end2 = start2;
 				} else {
 					return result;
 				}
+			} else {
+				return result;
 			}
-		} catch (IOException e) {
-			throw new RuntimeException(e.toString());
 		}
 	}
 
@@ -101,7 +135,7 @@ public class InstrumentationClassWriter extends ClassWriter {
 	 * @param type
 	 *            the internal name of a class or interface.
 	 * @param info
-	 *            the ClassReader corresponding to 'type'.
+	 *            the TypeHeader corresponding to 'type'.
 	 * @return a StringBuilder containing the ancestor classes of 'type',
 	 *         separated by ';'. The returned string has the following format:
 	 *         ";type1;type2 ... ;typeN", where type1 is 'type', and typeN is a
@@ -111,7 +145,7 @@ public class InstrumentationClassWriter extends ClassWriter {
 	 *             if the bytecode of 'type' or of some of its ancestor class
 	 *             cannot be loaded.
 	 */
-	private StringBuilder typeAncestors(String type, ClassReader info)
+	private StringBuilder typeAncestors(String type, TypeHeader info)
 			throws IOException {
 		StringBuilder b = new StringBuilder();
 		while (!"java/lang/Object".equals(type)) {
@@ -128,7 +162,7 @@ public class InstrumentationClassWriter extends ClassWriter {
 	 * @param type
 	 *            the internal name of a class or interface.
 	 * @param info
-	 *            the ClassReader corresponding to 'type'.
+	 *            the TypeHeader corresponding to 'type'.
 	 * @param itf
 	 *            the internal name of a interface.
 	 * @return true if 'type' implements directly or indirectly 'itf'
@@ -136,7 +170,7 @@ public class InstrumentationClassWriter extends ClassWriter {
 	 *             if the bytecode of 'type' or of some of its ancestor class
 	 *             cannot be loaded.
 	 */
-	private boolean typeImplements(String type, ClassReader info, String itf)
+	private boolean typeImplements(String type, TypeHeader info, String itf)
 			throws IOException {
 		while (!"java/lang/Object".equals(type)) {
 			String[] itfs = info.getInterfaces();
@@ -157,20 +191,15 @@ public class InstrumentationClassWriter extends ClassWriter {
 	}
 
 	/**
-	 * Returns a ClassReader corresponding to the given class or interface.
+	 * Returns a TypeHeader corresponding to the given class or interface.
 	 * 
 	 * @param type
 	 *            the internal name of a class or interface.
-	 * @return the ClassReader corresponding to 'type'.
+	 * @return the TypeHeader corresponding to 'type'.
 	 * @throws IOException
 	 *             if the bytecode of 'type' cannot be loaded.
 	 */
-	private ClassReader typeInfo(final String type) throws IOException {
-		InputStream is = l.getResourceAsStream(type + ".class");
-		try {
-			return new ClassReader(is);
-		} finally {
-			is.close();
-		}
+	private TypeHeader typeInfo(final String type) throws IOException {
+		return cache.getHeader(l, type);
 	}
 }
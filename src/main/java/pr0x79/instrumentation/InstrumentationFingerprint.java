@@ -0,0 +1,154 @@
+package pr0x79.instrumentation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import pr0x79.instrumentation.accessor.Accessors;
+import pr0x79.instrumentation.identification.Identifiers;
+
+/**
+ * Computes a fingerprint of everything that determines how a class is instrumented,
+ * i.e. the registered identifiers, the accessor classes, the instrumentation itself and ASM.
+ * Classes that were instrumented with the same fingerprint are instrumented identically
+ */
+public class InstrumentationFingerprint {
+	//Must be incremented whenever the instrumentation output changes due to a class that is not
+	//part of INSTRUMENTATION_CLASSES, e.g. the accessor data or the identifier registries
+	private static final int VERSION = 2;
+
+	//Classes whose code determines the instrumentation output, including the ASM writer
+	private static final Class<?>[] INSTRUMENTATION_CLASSES = {
+			BytecodeInstrumentation.class, ClassNodeMerger.class, InstrumentationTemplate.class, InstrumentationPlan.class,
+			InstrumentationClassWriter.class, TypeHierarchyCache.class, ClassReader.class, ClassWriter.class
+	};
+
+	//Package private classes of ASM that write the code and the frames of methods
+	private static final String[] ASM_WRITER_CLASSES = { "org/objectweb/asm/MethodWriter", "org/objectweb/asm/Frame" };
+
+	private InstrumentationFingerprint() { }
+
+	/**
+	 * Computes the fingerprint of the specified identifiers and accessors
+	 * @param identifiers
+	 * @param accessors
+	 * @return The SHA-256 fingerprint, or null if any identifier can not be fingerprinted
+	 * @throws IOException if an accessor class file cannot be read
+	 */
+	public static byte[] compute(Identifiers identifiers, Accessors accessors) throws IOException {
+		MessageDigest digest = newDigest();
+		update(digest, Integer.toString(VERSION));
+		for(Class<?> cls : INSTRUMENTATION_CLASSES) {
+			updateClassFile(digest, cls);
+		}
+		for(String cls : ASM_WRITER_CLASSES) {
+			updateClassFile(digest, cls, ClassWriter.class.getClassLoader());
+		}
+		if(!identifiers.updateFingerprint(digest)) {
+			return null;
+		}
+		accessors.updateFingerprint(digest);
+		return digest.digest();
+	}
+
+	/**
+	 * Creates a new SHA-256 message digest
+	 * @return
+	 */
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException ex) {
+			//Every Java platform is required to support SHA-256
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Adds the specified string, followed by a separator, to the fingerprint
+	 * @param digest
+	 * @param value
+	 */
+	public static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	/**
+	 * Adds the name and the class file of the specified class to the fingerprint
+	 * @param digest
+	 * @param cls
+	 * @throws IOException if the class file cannot be read
+	 */
+	public static void updateClassFile(MessageDigest digest, Class<?> cls) throws IOException {
+		updateClassFile(digest, cls.getName().replace('.', '/'), cls.getClassLoader());
+	}
+
+	/**
+	 * Adds the name and the class file of the specified class to the fingerprint
+	 * @param digest
+	 * @param cls The internal name of the class
+	 * @param loader The class loader to read the class file from
+	 * @throws IOException if the class file cannot be read
+	 */
+	public static void updateClassFile(MessageDigest digest, String cls, ClassLoader loader) throws IOException {
+		if(!tryUpdateClassFile(digest, cls, loader)) {
+			throw new IOException(String.format("Class file of %s not found", cls));
+		}
+	}
+
+	/**
+	 * Adds the name and the class file of the specified class to the fingerprint, if its class file
+	 * can be found. Lambdas and hidden classes are defined at runtime and don't have a class file
+	 * @param digest
+	 * @param cls
+	 * @return False if the class file cannot be found
+	 * @throws IOException if the class file cannot be read
+	 */
+	public static boolean tryUpdateClassFile(MessageDigest digest, Class<?> cls) throws IOException {
+		return tryUpdateClassFile(digest, cls.getName().replace('.', '/'), cls.getClassLoader());
+	}
+
+	private static boolean tryUpdateClassFile(MessageDigest digest, String cls, ClassLoader loader) throws IOException {
+		InputStream is = loader != null ? loader.getResourceAsStream(cls + ".class") : ClassLoader.getSystemResourceAsStream(cls + ".class");
+		if(is == null) {
+			return false;
+		}
+		try {
+			update(digest, cls);
+			digest.update(readFully(is));
+		} finally {
+			is.close();
+		}
+		return true;
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = is.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Returns the hexadecimal representation of the specified bytes
+	 * @param bytes
+	 * @return
+	 */
+	public static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,332 @@
+package pr0x79.instrumentation;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import pr0x79.instrumentation.accessor.ClassAccessorData.FieldAccessorData;
+import pr0x79.instrumentation.accessor.ClassAccessorData.FieldGeneratorData;
+import pr0x79.instrumentation.accessor.ClassAccessorData.MethodAccessorData;
+import pr0x79.instrumentation.accessor.LocalVarData;
+import pr0x79.instrumentation.accessor.MethodInterceptorData;
+
+/**
+ * Immutable plan of all edits to be applied to a single class.
+ * All identifiers are bound to the members of the class when the plan
+ * is created, applying the plan only emits code
+ */
+public class InstrumentationPlan {
+	private final String[] interfaces;
+	private final List<FieldAccessorTarget> fieldAccessors;
+	private final List<FieldGeneratorTarget> fieldGenerators;
+	private final List<MethodAccessorTarget> methodAccessors;
+	private final List<LocalVarField> localVarFields;
+	private final List<InterceptorTarget> interceptors;
+	private final boolean isLoaderIndependent;
+
+	InstrumentationPlan(String[] interfaces, List<FieldAccessorTarget> fieldAccessors, List<FieldGeneratorTarget> fieldGenerators, List<MethodAccessorTarget> methodAccessors, List<LocalVarField> localVarFields, List<InterceptorTarget> interceptors, boolean isLoaderIndependent) {
+		this.interfaces = interfaces;
+		this.fieldAccessors = Collections.unmodifiableList(fieldAccessors);
+		this.fieldGenerators = Collections.unmodifiableList(fieldGenerators);
+		this.methodAccessors = Collections.unmodifiableList(methodAccessors);
+		this.localVarFields = Collections.unmodifiableList(localVarFields);
+		this.interceptors = Collections.unmodifiableList(interceptors);
+		this.isLoaderIndependent = isLoaderIndependent;
+	}
+
+	/**
+	 * Returns whether the plan is the same for all class loaders, i.e. no type hierarchy
+	 * was resolved through the class loader that defines the class while the plan was created
+	 * @return
+	 */
+	public boolean isLoaderIndependent() {
+		return this.isLoaderIndependent;
+	}
+
+	/**
+	 * Returns the internal names of the accessor interfaces to be implemented
+	 * @return
+	 */
+	public String[] getInterfaces() {
+		return this.interfaces.clone();
+	}
+
+	/**
+	 * Returns all field accessors and their target fields
+	 * @return
+	 */
+	public List<FieldAccessorTarget> getFieldAccessors() {
+		return this.fieldAccessors;
+	}
+
+	/**
+	 * Returns all field generators
+	 * @return
+	 */
+	public List<FieldGeneratorTarget> getFieldGenerators() {
+		return this.fieldGenerators;
+	}
+
+	/**
+	 * Returns all method accessors and their target methods
+	 * @return
+	 */
+	public List<MethodAccessorTarget> getMethodAccessors() {
+		return this.methodAccessors;
+	}
+
+	/**
+	 * Returns all fields to be generated for the {@link LocalVarData}s of the interceptors
+	 * @return
+	 */
+	public List<LocalVarField> getLocalVarFields() {
+		return this.localVarFields;
+	}
+
+	/**
+	 * Returns all interceptors and their insertion points
+	 * @return
+	 */
+	public List<InterceptorTarget> getInterceptors() {
+		return this.interceptors;
+	}
+
+	/**
+	 * A field accessor bound to its target field
+	 */
+	public static class FieldAccessorTarget {
+		private final FieldAccessorData fieldAccessor;
+		private final String accessorClass;
+		private final String fieldName, fieldDesc;
+
+		FieldAccessorTarget(FieldAccessorData fieldAccessor, String accessorClass, String fieldName, String fieldDesc) {
+			this.fieldAccessor = fieldAccessor;
+			this.accessorClass = accessorClass;
+			this.fieldName = fieldName;
+			this.fieldDesc = fieldDesc;
+		}
+
+		/**
+		 * Returns the field accessor
+		 * @return
+		 */
+		public FieldAccessorData getFieldAccessor() {
+			return this.fieldAccessor;
+		}
+
+		/**
+		 * Returns the name of the accessor class
+		 * @return
+		 */
+		public String getAccessorClass() {
+			return this.accessorClass;
+		}
+
+		/**
+		 * Returns the name of the target field
+		 * @return
+		 */
+		public String getFieldName() {
+			return this.fieldName;
+		}
+
+		/**
+		 * Returns the descriptor of the target field
+		 * @return
+		 */
+		public String getFieldDesc() {
+			return this.fieldDesc;
+		}
+	}
+
+	/**
+	 * A field generator and whether its field has to be generated
+	 */
+	public static class FieldGeneratorTarget {
+		private final FieldGeneratorData fieldGenerator;
+		private final String accessorClass;
+		private final boolean generateField;
+
+		FieldGeneratorTarget(FieldGeneratorData fieldGenerator, String accessorClass, boolean generateField) {
+			this.fieldGenerator = fieldGenerator;
+			this.accessorClass = accessorClass;
+			this.generateField = generateField;
+		}
+
+		/**
+		 * Returns the field generator
+		 * @return
+		 */
+		public FieldGeneratorData getFieldGenerator() {
+			return this.fieldGenerator;
+		}
+
+		/**
+		 * Returns the name of the accessor class
+		 * @return
+		 */
+		public String getAccessorClass() {
+			return this.accessorClass;
+		}
+
+		/**
+		 * Returns whether the field does not exist yet and has to be generated
+		 * @return
+		 */
+		public boolean isGenerateField() {
+			return this.generateField;
+		}
+	}
+
+	/**
+	 * A method accessor bound to its target method
+	 */
+	public static class MethodAccessorTarget {
+		private final MethodAccessorData methodAccessor;
+		private final MethodNode targetMethod;
+		private final String[] exceptions;
+
+		MethodAccessorTarget(MethodAccessorData methodAccessor, MethodNode targetMethod, String[] exceptions) {
+			this.methodAccessor = methodAccessor;
+			this.targetMethod = targetMethod;
+			this.exceptions = exceptions;
+		}
+
+		/**
+		 * Returns the method accessor
+		 * @return
+		 */
+		public MethodAccessorData getMethodAccessor() {
+			return this.methodAccessor;
+		}
+
+		/**
+		 * Returns the method to be proxied
+		 * @return
+		 */
+		public MethodNode getTargetMethod() {
+			return this.targetMethod;
+		}
+
+		/**
+		 * Returns the exceptions of the method to be proxied
+		 * @return
+		 */
+		public String[] getExceptions() {
+			return this.exceptions.clone();
+		}
+	}
+
+	/**
+	 * A field that stores a {@link LocalVarData} of an interceptor
+	 */
+	public static class LocalVarField {
+		private final LocalVarData localVar;
+		private final String fieldName;
+		private final Type fieldType;
+
+		LocalVarField(LocalVarData localVar, String fieldName, Type fieldType) {
+			this.localVar = localVar;
+			this.fieldName = fieldName;
+			this.fieldType = fieldType;
+		}
+
+		/**
+		 * Returns the local variable
+		 * @return
+		 */
+		public LocalVarData getLocalVar() {
+			return this.localVar;
+		}
+
+		/**
+		 * Returns the name of the field to be generated
+		 * @return
+		 */
+		public String getFieldName() {
+			return this.fieldName;
+		}
+
+		/**
+		 * Returns the type of the field to be generated
+		 * @return
+		 */
+		public Type getFieldType() {
+			return this.fieldType;
+		}
+	}
+
+	/**
+	 * An interceptor bound to its target method and insertion points
+	 */
+	public static class InterceptorTarget {
+		private final MethodInterceptorData interceptor;
+		private final MethodNode targetMethod;
+		private final AbstractInsnNode insertionNode, jumpNode;
+		private final LocalVariableNode[] localVariables;
+		private final boolean castReturn;
+
+		InterceptorTarget(MethodInterceptorData interceptor, MethodNode targetMethod, AbstractInsnNode insertionNode, AbstractInsnNode jumpNode, LocalVariableNode[] localVariables, boolean castReturn) {
+			this.interceptor = interceptor;
+			this.targetMethod = targetMethod;
+			this.insertionNode = insertionNode;
+			this.jumpNode = jumpNode;
+			this.localVariables = localVariables;
+			this.castReturn = castReturn;
+		}
+
+		/**
+		 * Returns the interceptor
+		 * @return
+		 */
+		public MethodInterceptorData getInterceptor() {
+			return this.interceptor;
+		}
+
+		/**
+		 * Returns the method to be intercepted
+		 * @return
+		 */
+		public MethodNode getTargetMethod() {
+			return this.targetMethod;
+		}
+
+		/**
+		 * Returns the instruction before which the interceptor call is inserted
+		 * @return
+		 */
+		public AbstractInsnNode getInsertionNode() {
+			return this.insertionNode;
+		}
+
+		/**
+		 * Returns the instruction before which the jump target is inserted, or null
+		 * @return
+		 */
+		public AbstractInsnNode getJumpNode() {
+			return this.jumpNode;
+		}
+
+		/**
+		 * Returns the local variables of the target method in the
+		 * order of the {@link MethodInterceptorData#getLocalVars()}
+		 * @return
+		 */
+		public LocalVariableNode[] getLocalVariables() {
+			return this.localVariables.clone();
+		}
+
+		/**
+		 * Returns whether the return value of a returning interceptor is an accessor and must
+		 * be cast to the return type of the target method
+		 * @return
+		 */
+		public boolean isCastReturn() {
+			return this.castReturn;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package pr0x79.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import pr0x79.instrumentation.accessor.ClassAccessorData;
+import pr0x79.instrumentation.accessor.ClassAccessorData.FieldAccessorData;
+import pr0x79.instrumentation.accessor.ClassAccessorData.MethodAccessorData;
+import pr0x79.instrumentation.accessor.MethodInterceptorData;
+import pr0x79.instrumentation.identification.IFieldIdentifier;
+import pr0x79.instrumentation.identification.IFieldIdentifier.FieldDescription;
+import pr0x79.instrumentation.identification.IMethodIdentifier;
+import pr0x79.instrumentation.identification.IMethodIdentifier.MethodDescription;
+
+/**
+ * Immutable, class member independent part of an {@link InstrumentationPlan}.
+ * Contains the accessors and interceptors that target a class and the field
+ * and method identifiers that need to be bound to the class members, indexed
+ * by member description for static identifiers.
+ * Templates of classes that are only targeted by static class identifiers are
+ * created once by the {@link ClassAccessorIndex} and reused for every class with that name
+ */
+public class InstrumentationTemplate {
+	private static final int[] NONE = new int[0];
+
+	private final List<ClassAccessorData> classAccessors;
+	private final List<List<MethodInterceptorData>> accessorInterceptors;
+	private final String[] interfaces;
+
+	private final List<MemberSpec<IFieldIdentifier>> fieldSpecs = new ArrayList<>();
+	private final Map<FieldDescription, int[]> staticFieldSpecs = new HashMap<>();
+	private final int[] dynamicFieldSpecs;
+
+	private final List<MemberSpec<IMethodIdentifier>> methodSpecs = new ArrayList<>();
+	private final Map<MethodDescription, int[]> staticMethodSpecs = new HashMap<>();
+	private final int[] dynamicMethodSpecs;
+
+	private final Map<Object, Integer> specIndices = new IdentityHashMap<>();
+
+	/**
+	 * Creates a new template for the specified class accessors and method interceptors
+	 * @param classAccessors All class accessors that target the class
+	 * @param classInterceptors All method interceptors that target the class
+	 */
+	public InstrumentationTemplate(List<ClassAccessorData> classAccessors, List<MethodInterceptorData> classInterceptors) {
+		this.classAccessors = Collections.unmodifiableList(new ArrayList<>(classAccessors));
+
+		this.interfaces = new String[classAccessors.size()];
+		int i = 0;
+		for(ClassAccessorData accessor : classAccessors) {
+			this.interfaces[i] = accessor.getAccessorClass().replace('.', '/');
+			i++;
+		}
+
+		List<List<MethodInterceptorData>> accessorInterceptors = new ArrayList<>(classAccessors.size());
+		List<Integer> dynamicFieldSpecs = new ArrayList<>();
+		List<Integer> dynamicMethodSpecs = new ArrayList<>();
+		Map<FieldDescription, List<Integer>> staticFieldSpecs = new HashMap<>();
+		Map<MethodDescription, List<Integer>> staticMethodSpecs = new HashMap<>();
+
+		for(ClassAccessorData classAccessor : classAccessors) {
+			for(FieldAccessorData fieldAccessor : classAccessor.getFieldAccessors()) {
+				IFieldIdentifier identifier = fieldAccessor.getFieldIdentifier();
+				int index = this.fieldSpecs.size();
+				this.fieldSpecs.add(new MemberSpec<>(classAccessor.getAccessorClass(), new MethodDescription(fieldAccessor.getAccessorMethod().name, fieldAccessor.getAccessorMethod().desc), fieldAccessor.getIdentifierId(), identifier));
+				this.specIndices.put(fieldAccessor, index);
+				addSpec(index, identifier.isStatic() ? identifier.getFields() : null, staticFieldSpecs, dynamicFieldSpecs);
+			}
+			for(MethodAccessorData methodAccessor : classAccessor.getMethodAccessors()) {
+				IMethodIdentifier identifier = methodAccessor.getMethodIdentifier();
+				int index = this.methodSpecs.size();
+				this.methodSpecs.add(new MemberSpec<>(classAccessor.getAccessorClass(), new MethodDescription(methodAccessor.getAccessorMethod().name, methodAccessor.getAccessorMethod().desc), methodAccessor.getIdentifierId(), identifier));
+				this.specIndices.put(methodAccessor, index);
+				addSpec(index, identifier.isStatic() ? identifier.getMethods() : null, staticMethodSpecs, dynamicMethodSpecs);
+			}
+			List<MethodInterceptorData> interceptors = new ArrayList<>();
+			for(MethodInterceptorData interceptor : classAccessor.getMethodInterceptors()) {
+				if(classInterceptors.contains(interceptor)) {
+					IMethodIdentifier identifier = interceptor.getMethodIdentifier();
+					int index = this.methodSpecs.size();
+					this.methodSpecs.add(new MemberSpec<>(interceptor.getAccessorClass(), new MethodDescription(interceptor.getInterceptorMethod(), interceptor.getInterceptorMethodDesc()), interceptor.getMethodIdentifierId(), identifier));
+					this.specIndices.put(interceptor, index);
+					addSpec(index, identifier.isStatic() ? identifier.getMethods() : null, staticMethodSpecs, dynamicMethodSpecs);
+					interceptors.add(interceptor);
+				}
+			}
+			accessorInterceptors.add(Collections.unmodifiableList(interceptors));
+		}
+
+		this.accessorInterceptors = Collections.unmodifiableList(accessorInterceptors);
+		this.dynamicFieldSpecs = toArray(dynamicFieldSpecs);
+		this.dynamicMethodSpecs = toArray(dynamicMethodSpecs);
+		for(Map.Entry<FieldDescription, List<Integer>> entry : staticFieldSpecs.entrySet()) {
+			this.staticFieldSpecs.put(entry.getKey(), toArray(entry.getValue()));
+		}
+		for(Map.Entry<MethodDescription, List<Integer>> entry : staticMethodSpecs.entrySet()) {
+			this.staticMethodSpecs.put(entry.getKey(), toArray(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Adds a spec index to the static specs if the member descriptions are known, or
+	 * to the dynamic specs otherwise
+	 * @param index
+	 * @param descriptions The member descriptions of a static identifier, or null
+	 * @param staticSpecs
+	 * @param dynamicSpecs
+	 */
+	private static <D> void addSpec(int index, D[] descriptions, Map<D, List<Integer>> staticSpecs, List<Integer> dynamicSpecs) {
+		if(descriptions == null) {
+			dynamicSpecs.add(index);
+		} else {
+			for(D description : descriptions) {
+				List<Integer> specs = staticSpecs.get(description);
+				if(specs == null) {
+					staticSpecs.put(description, specs = new ArrayList<>(1));
+				}
+				if(!specs.contains(index)) {
+					specs.add(index);
+				}
+			}
+		}
+	}
+
+	private static int[] toArray(List<Integer> values) {
+		if(values.isEmpty()) {
+			return NONE;
+		}
+		int[] array = new int[values.size()];
+		for(int i = 0; i < array.length; i++) {
+			array[i] = values.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Returns whether no accessor targets the class
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return this.classAccessors.isEmpty();
+	}
+
+	/**
+	 * Returns all class accessors that target the class
+	 * @return
+	 */
+	public List<ClassAccessorData> getClassAccessors() {
+		return this.classAccessors;
+	}
+
+	/**
+	 * Returns the method interceptors of the class accessor at the specified index
+	 * of {@link #getClassAccessors()} that target the class
+	 * @param accessorIndex
+	 * @return
+	 */
+	public List<MethodInterceptorData> getMethodInterceptors(int accessorIndex) {
+		return this.accessorInterceptors.get(accessorIndex);
+	}
+
+	/**
+	 * Returns the internal names of the accessor interfaces to be implemented
+	 * @return
+	 */
+	public String[] getInterfaces() {
+		return this.interfaces.clone();
+	}
+
+	/**
+	 * Returns the field identifiers to be bound
+	 * @return
+	 */
+	List<MemberSpec<IFieldIdentifier>> getFieldSpecs() {
+		return this.fieldSpecs;
+	}
+
+	/**
+	 * Returns the indices of the field specs whose static identifier matches the specified field
+	 * @param description
+	 * @return
+	 */
+	int[] getStaticFieldSpecs(FieldDescription description) {
+		int[] specs = this.staticFieldSpecs.get(description);
+		return specs != null ? specs : NONE;
+	}
+
+	/**
+	 * Returns the indices of the field specs with a dynamic identifier
+	 * @return
+	 */
+	int[] getDynamicFieldSpecs() {
+		return this.dynamicFieldSpecs;
+	}
+
+	/**
+	 * Returns the method identifiers to be bound
+	 * @return
+	 */
+	List<MemberSpec<IMethodIdentifier>> getMethodSpecs() {
+		return this.methodSpecs;
+	}
+
+	/**
+	 * Returns the indices of the method specs whose static identifier matches the specified method
+	 * @param description
+	 * @return
+	 */
+	int[] getStaticMethodSpecs(MethodDescription description) {
+		int[] specs = this.staticMethodSpecs.get(description);
+		return specs != null ? specs : NONE;
+	}
+
+	/**
+	 * Returns the indices of the method specs with a dynamic identifier
+	 * @return
+	 */
+	int[] getDynamicMethodSpecs() {
+		return this.dynamicMethodSpecs;
+	}
+
+	/**
+	 * Returns the spec index of the specified {@link FieldAccessorData}, {@link MethodAccessorData}
+	 * or {@link MethodInterceptorData}
+	 * @param data
+	 * @return
+	 */
+	int getSpecIndex(Object data) {
+		return this.specIndices.get(data);
+	}
+
+	/**
+	 * An identifier of an accessor member that needs to be bound to a class member
+	 * @param <I> The identifier type
+	 */
+	static final class MemberSpec<I> {
+		final String accessorClass;
+		final MethodDescription accessorMethod;
+		final String identifierId;
+		final I identifier;
+
+		private MemberSpec(String accessorClass, MethodDescription accessorMethod, String identifierId, I identifier) {
+			this.accessorClass = accessorClass;
+			this.accessorMethod = accessorMethod;
+			this.identifierId = identifierId;
+			this.identifier = identifier;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package pr0x79.instrumentation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent cache of instrumented class files, addressed by the SHA-256 hash of the
+ * original class file. The cache of each {@link InstrumentationFingerprint} is stored in
+ * its own file, so a cache is invalidated automatically when the identifiers or accessors change.
+ * The caches of other fingerprints are deleted once they were not written to for a week.
+ * <p>
+ * The file is append only and can be used by several JVMs at once. Records are only
+ * appended while holding a file lock, reading is lock free through a memory mapping.
+ * Each record is checked against its checksum before it is indexed, incomplete records
+ * at the end of the file are ignored and removed by the next writer.
+ * <pre>
+ * file:   magic (8), fingerprint (32), records...
+ * record: magic (4), key (32), length (4), crc32 (4), class file (length)
+ * </pre>
+ */
+public class PersistentClassCache implements Closeable {
+	private static final long FILE_MAGIC = 0x7072307837394343L;
+	private static final int RECORD_MAGIC = 0x70723739;
+	private static final int KEY_LENGTH = 32;
+	private static final int FILE_HEADER_LENGTH = 8 + KEY_LENGTH;
+	private static final int RECORD_HEADER_LENGTH = 4 + KEY_LENGTH + 4 + 4;
+
+	//Caches of other fingerprints are deleted if they were not written to for a week
+	private static final long STALE_CACHE_AGE = TimeUnit.DAYS.toMillis(7);
+	private static final Pattern CACHE_FILE_NAME = Pattern.compile("[0-9a-f]{" + KEY_LENGTH * 2 + "}\\.cache");
+
+	private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(InstrumentationFingerprint::newDigest);
+
+	private final FileChannel channel;
+	private final Map<ByteBuffer, Record> index = new ConcurrentHashMap<>();
+	private volatile MappedByteBuffer mapping;
+	private volatile long indexedEnd = FILE_HEADER_LENGTH;
+
+	private static final class Record {
+		private final int offset;
+		private final int length;
+
+		private Record(int offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private PersistentClassCache(FileChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Opens or creates the cache of the specified fingerprint in the specified directory
+	 * @param directory The cache directory
+	 * @param fingerprint The {@link InstrumentationFingerprint}
+	 * @return
+	 * @throws IOException
+	 */
+	public static PersistentClassCache open(Path directory, byte[] fingerprint) throws IOException {
+		if(fingerprint.length != KEY_LENGTH) {
+			throw new IllegalArgumentException("Invalid fingerprint length");
+		}
+		Files.createDirectories(directory);
+		Path file = directory.resolve(InstrumentationFingerprint.toHex(fingerprint) + ".cache");
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			FileLock lock = channel.lock();
+			try {
+				ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+				if(channel.size() == 0) {
+					header.putLong(FILE_MAGIC).put(fingerprint).flip();
+					writeFully(channel, header, 0);
+				} else {
+					readFully(channel, header, 0);
+					header.flip();
+					long magic = header.getLong();
+					byte[] fileFingerprint = new byte[KEY_LENGTH];
+					header.get(fileFingerprint);
+					if(magic != FILE_MAGIC || !Arrays.equals(fileFingerprint, fingerprint)) {
+						throw new IOException(String.format("Invalid class cache file %s", file));
+					}
+				}
+			} finally {
+				lock.release();
+			}
+			PersistentClassCache cache = new PersistentClassCache(channel);
+			synchronized(cache) {
+				cache.indexRecords(false);
+			}
+			deleteStaleCaches(directory, file);
+			return cache;
+		} catch(IOException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Deletes the caches of other fingerprints that were not written to for {@link #STALE_CACHE_AGE}.
+	 * Caches of other fingerprints that are still in use, e.g. by other applications sharing the
+	 * directory, are kept. Caches that cannot be deleted are ignored
+	 * @param directory The cache directory
+	 * @param file The cache file of the current fingerprint
+	 */
+	private static void deleteStaleCaches(Path directory, Path file) {
+		long staleTime = System.currentTimeMillis() - STALE_CACHE_AGE;
+		try(DirectoryStream<Path> caches = Files.newDirectoryStream(directory, "*.cache")) {
+			for(Path cache : caches) {
+				//Only files named by a fingerprint belong to the class cache
+				if(cache.equals(file) || !CACHE_FILE_NAME.matcher(cache.getFileName().toString()).matches()) {
+					continue;
+				}
+				try {
+					if(Files.getLastModifiedTime(cache).toMillis() < staleTime) {
+						Files.deleteIfExists(cache);
+					}
+				} catch(IOException ex) {
+					//The cache may be deleted by another JVM or still be opened on platforms that don't allow deleting open files
+				}
+			}
+		} catch(IOException ex) {
+			//Stale caches are deleted the next time a cache is opened
+		}
+	}
+
+	/**
+	 * Returns the key of the specified original class file
+	 * @param classFile
+	 * @return
+	 */
+	public byte[] getKey(byte[] classFile) {
+		MessageDigest digest = DIGESTS.get();
+		digest.reset();
+		return digest.digest(classFile);
+	}
+
+	/**
+	 * Returns the cached instrumented class file of the specified key, including
+	 * the class files that were added by other JVMs since the cache was opened
+	 * @param key The key of the original class file, see {@link #getKey(byte[])}
+	 * @return The instrumented class file, or null if it is not cached
+	 * @throws IOException
+	 */
+	public byte[] get(byte[] key) throws IOException {
+		Record record = this.index.get(ByteBuffer.wrap(key));
+		if(record == null && this.channel.size() > this.indexedEnd) {
+			synchronized(this) {
+				this.indexRecords(false);
+			}
+			record = this.index.get(ByteBuffer.wrap(key));
+		}
+		if(record == null) {
+			return null;
+		}
+		MappedByteBuffer mapping = this.mapping;
+		if(mapping == null || mapping.capacity() < record.offset + record.length) {
+			mapping = this.remap();
+		}
+		byte[] classFile = new byte[record.length];
+		ByteBuffer buffer = mapping.duplicate();
+		buffer.position(record.offset);
+		buffer.get(classFile);
+		return classFile;
+	}
+
+	/**
+	 * Appends the instrumented class file of the specified key, unless it is already cached
+	 * @param key The key of the original class file, see {@link #getKey(byte[])}
+	 * @param classFile The instrumented class file
+	 * @throws IOException
+	 */
+	public synchronized void put(byte[] key, byte[] classFile) throws IOException {
+		if(this.index.containsKey(ByteBuffer.wrap(key))) {
+			return;
+		}
+		FileLock lock = this.channel.lock();
+		try {
+			//Index the records of other JVMs and remove incomplete records
+			this.indexRecords(true);
+			if(this.index.containsKey(ByteBuffer.wrap(key))) {
+				return;
+			}
+			long offset = this.channel.size();
+			if(offset + RECORD_HEADER_LENGTH + classFile.length > Integer.MAX_VALUE) {
+				//Mappings are limited to 2GB
+				return;
+			}
+			CRC32 crc = new CRC32();
+			crc.update(classFile, 0, classFile.length);
+			ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + classFile.length);
+			record.putInt(RECORD_MAGIC).put(key).putInt(classFile.length).putInt((int) crc.getValue()).put(classFile).flip();
+			writeFully(this.channel, record, offset);
+			this.index.put(ByteBuffer.wrap(key.clone()), new Record((int) offset + RECORD_HEADER_LENGTH, classFile.length));
+			this.indexedEnd = offset + record.capacity();
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Indexes all complete records after the last indexed record
+	 * @param truncate Whether an incomplete record should be removed from the file.
+	 * Requires the file lock
+	 * @throws IOException
+	 */
+	private void indexRecords(boolean truncate) throws IOException {
+		long size = this.channel.size();
+		long offset = this.indexedEnd;
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+		while(offset + RECORD_HEADER_LENGTH <= size && offset + RECORD_HEADER_LENGTH <= Integer.MAX_VALUE) {
+			header.clear();
+			readFully(this.channel, header, offset);
+			header.flip();
+			int magic = header.getInt();
+			byte[] key = new byte[KEY_LENGTH];
+			header.get(key);
+			int length = header.getInt();
+			int checksum = header.getInt();
+			if(magic != RECORD_MAGIC || length < 0 || offset + RECORD_HEADER_LENGTH + length > size) {
+				break;
+			}
+			ByteBuffer classFile = ByteBuffer.allocate(length);
+			readFully(this.channel, classFile, offset + RECORD_HEADER_LENGTH);
+			CRC32 crc = new CRC32();
+			crc.update(classFile.array(), 0, length);
+			if((int) crc.getValue() != checksum) {
+				break;
+			}
+			this.index.putIfAbsent(ByteBuffer.wrap(key), new Record((int) offset + RECORD_HEADER_LENGTH, length));
+			offset += RECORD_HEADER_LENGTH + length;
+		}
+		if(truncate && offset < size) {
+			this.channel.truncate(offset);
+		}
+		this.indexedEnd = offset;
+	}
+
+	/**
+	 * Maps all indexed records into memory
+	 * @return
+	 * @throws IOException
+	 */
+	private synchronized MappedByteBuffer remap() throws IOException {
+		MappedByteBuffer mapping = this.mapping;
+		if(mapping == null || mapping.capacity() < this.indexedEnd) {
+			this.mapping = mapping = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.indexedEnd);
+		}
+		return mapping;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if(read < 0) {
+				throw new IOException("Unexpected end of class cache file");
+			}
+			position += read;
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+}
@@ -0,0 +1,96 @@
+package pr0x79.instrumentation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A trie that maps string prefixes to values. Looking up a name
+ * visits all values whose prefix is a prefix of the name in a single walk
+ * @param <T>
+ */
+public class PrefixTrie<T> {
+	private final Node<T> root = new Node<>();
+
+	private static final class Node<T> {
+		private final Map<Character, Node<T>> children = new HashMap<>();
+		private final List<T> values = new ArrayList<>(0);
+	}
+
+	/**
+	 * Adds a value for the specified prefix. An empty prefix matches any name
+	 * @param prefix
+	 * @param value
+	 */
+	public void put(String prefix, T value) {
+		Node<T> node = this.root;
+		for(int i = 0; i < prefix.length(); i++) {
+			Character c = prefix.charAt(i);
+			Node<T> child = node.children.get(c);
+			if(child == null) {
+				node.children.put(c, child = new Node<>());
+			}
+			node = child;
+		}
+		if(!node.values.contains(value)) {
+			node.values.add(value);
+		}
+	}
+
+	/**
+	 * Visits all values whose prefix matches the specified name, until
+	 * the visitor returns true
+	 * @param name
+	 * @param visitor
+	 * @return True if the visitor returned true for any value
+	 */
+	public boolean anyMatch(String name, Predicate<T> visitor) {
+		Node<T> node = this.root;
+		int i = 0;
+		while(node != null) {
+			for(T value : node.values) {
+				if(visitor.test(value)) {
+					return true;
+				}
+			}
+			if(i >= name.length() || node.children.isEmpty()) {
+				break;
+			}
+			node = node.children.get(name.charAt(i++));
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether any prefix in this trie matches the specified name
+	 * @param name
+	 * @return
+	 */
+	public boolean matches(String name) {
+		return this.anyMatch(name, value -> true);
+	}
+
+	/**
+	 * Returns the first value of the longest prefix that matches the specified name,
+	 * or null if no prefix matches
+	 * @param name
+	 * @return
+	 */
+	public T getLongestMatch(String name) {
+		Node<T> node = this.root;
+		T match = null;
+		int i = 0;
+		while(node != null) {
+			if(!node.values.isEmpty()) {
+				match = node.values.get(0);
+			}
+			if(i >= name.length() || node.children.isEmpty()) {
+				break;
+			}
+			node = node.children.get(name.charAt(i++));
+		}
+		return match;
+	}
+}
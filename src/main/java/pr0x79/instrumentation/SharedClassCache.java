@@ -0,0 +1,250 @@
+package pr0x79.instrumentation;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * In memory cache of instrumented class files that is shared by all class loaders.
+ * When the same class file is loaded by several class loaders, e.g. a library in the web applications
+ * of an application server, it is only instrumented once. The class files are identified by their
+ * name and a hash of their content, the accessors that target a class only depend on its name.
+ * Instrumented classes whose plan or frames depend on the class hierarchy seen by their class loader
+ * are not shared, see {@link InstrumentationPlan#isLoaderIndependent()}.
+ * <p>
+ * If several class loaders transform the same class file concurrently, the first one becomes
+ * the leader of the transformation and the others wait for its result, see {@link #join(ClassLoader, String, byte[])}.
+ * The others stop waiting and transform the class themselves as soon as the leader is blocked or waiting,
+ * e.g. for the class loading lock of a waiting class loader.
+ * An entry is evicted when the class loader that produced it is collected. Classes of the bootstrap,
+ * platform and system class loaders are not shared, these loaders are never collected and define each class only once
+ */
+public class SharedClassCache {
+	//Maximum time a class loader waits for a running leader. The waiting class loader holds its class loading lock
+	private static final long WAIT_MILLIS = 500;
+	//Interval in which the waiting class loader checks whether the leader is blocked
+	private static final long POLL_MILLIS = 5;
+
+	private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+	private final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<>();
+	//The system class loader and its parents, null is the bootstrap class loader
+	private final Set<ClassLoader> permanentLoaders = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	public SharedClassCache() {
+		for(ClassLoader loader = ClassLoader.getSystemClassLoader(); loader != null; loader = loader.getParent()) {
+			this.permanentLoaders.add(loader);
+		}
+	}
+
+	private static final class Key {
+		private final String className;
+		private final int length;
+		private final int hash;
+
+		private Key(String className, byte[] bytes) {
+			this.className = className;
+			this.length = bytes.length;
+			this.hash = Arrays.hashCode(bytes);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.className.hashCode() + this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.hash == other.hash && this.length == other.length && this.className.equals(other.className);
+		}
+	}
+
+	/**
+	 * Reference to the class loader that produced an entry, used to evict the entry
+	 */
+	private static final class LoaderReference extends WeakReference<ClassLoader> {
+		private final Entry entry;
+
+		private LoaderReference(ClassLoader loader, ReferenceQueue<ClassLoader> queue, Entry entry) {
+			super(loader, queue);
+			this.entry = entry;
+		}
+	}
+
+	private static final class Entry {
+		private final Key key;
+		private final byte[] input;
+		private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+		//Only set while the class is transformed, the thread must not be retained by the cache
+		private volatile Thread leader;
+		//Keeps the reference reachable until the entry is evicted
+		@SuppressWarnings("unused")
+		private LoaderReference loader;
+
+		private Entry(Key key, byte[] input, Thread leader) {
+			this.key = key;
+			this.input = input;
+			this.leader = leader;
+		}
+	}
+
+	/**
+	 * A transformation of a class file. The leader must either {@link #complete(byte[])}
+	 * or {@link #fail()} the transformation
+	 */
+	public final class Flight {
+		private final Entry entry;
+		private final boolean isLeader;
+
+		private Flight(Entry entry, boolean isLeader) {
+			this.entry = entry;
+			this.isLeader = isLeader;
+		}
+
+		/**
+		 * Returns whether the caller has to transform the class and complete the transformation
+		 * @return
+		 */
+		public boolean isLeader() {
+			return this.isLeader;
+		}
+
+		/**
+		 * Waits for the transformation of the leader and returns the instrumented class file.
+		 * Returns null if the class file is not shared, or if the leader is blocked, waiting or takes
+		 * too long. The caller then has to transform the class itself without completing the transformation
+		 * @return
+		 */
+		public byte[] await() {
+			if(this.isLeader || this.entry == null || this.entry.leader == Thread.currentThread()) {
+				//The leader may transform the same class recursively
+				return null;
+			}
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MILLIS);
+			try {
+				while(true) {
+					try {
+						return this.entry.result.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					} catch(TimeoutException ex) {
+						Thread leader = this.entry.leader;
+						if((leader != null && isBlocked(leader)) || System.nanoTime() - deadline >= 0) {
+							//The leader may wait for a lock that is held by the caller
+							return null;
+						}
+					}
+				}
+			} catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return null;
+			} catch(ExecutionException ex) {
+				return null;
+			}
+		}
+
+		/**
+		 * Shares the instrumented class file with all waiting and future class loaders.
+		 * Only the first completion of the leader has an effect
+		 * @param instrumented The instrumented class file, or null if the class is not shared
+		 */
+		public void complete(byte[] instrumented) {
+			if(!this.isLeader || this.entry.result.isDone()) {
+				return;
+			}
+			if(instrumented == null) {
+				//Unmodified and loader dependent classes are not shared
+				SharedClassCache.this.entries.remove(this.entry.key, this.entry);
+			}
+			this.entry.leader = null;
+			this.entry.result.complete(instrumented);
+		}
+
+		/**
+		 * Ends the transformation without a result, the waiting class loaders transform the class themselves
+		 */
+		public void fail() {
+			this.complete(null);
+		}
+	}
+
+	/**
+	 * Returns whether the specified thread is blocked or waiting and may not make progress
+	 * @param thread
+	 * @return
+	 */
+	private static boolean isBlocked(Thread thread) {
+		switch(thread.getState()) {
+		case BLOCKED:
+		case WAITING:
+		case TIMED_WAITING:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Joins the transformation of the specified class file. If the class file was already
+	 * transformed or is being transformed by another class loader, {@link Flight#await()} returns
+	 * the instrumented class file. Otherwise the caller becomes the leader of the transformation.
+	 * Class files of class loaders that are never collected are not shared
+	 * @param loader The class loader that defines the class, null for the bootstrap class loader
+	 * @param className The internal name of the class
+	 * @param bytes The class file
+	 * @return
+	 */
+	public Flight join(ClassLoader loader, String className, byte[] bytes) {
+		if(loader == null || this.permanentLoaders.contains(loader)) {
+			//The entry could never be evicted
+			return new Flight(null, false);
+		}
+		this.evictCollected();
+		Key key = new Key(className, bytes);
+		Entry entry = new Entry(key, bytes, Thread.currentThread());
+		Entry existing = this.entries.putIfAbsent(key, entry);
+		if(existing == null) {
+			entry.loader = new LoaderReference(loader, this.collectedLoaders, entry);
+			return new Flight(entry, true);
+		}
+		if(!Arrays.equals(existing.input, bytes)) {
+			//Hash collision, the class file is transformed without being shared
+			return new Flight(null, false);
+		}
+		return new Flight(existing, false);
+	}
+
+	/**
+	 * Returns the number of shared class files
+	 * @return
+	 */
+	public int size() {
+		this.evictCollected();
+		return this.entries.size();
+	}
+
+	/**
+	 * Evicts the entries of all collected class loaders
+	 */
+	private void evictCollected() {
+		Reference<? extends ClassLoader> reference;
+		while((reference = this.collectedLoaders.poll()) != null) {
+			Entry entry = ((LoaderReference) reference).entry;
+			this.entries.remove(entry.key, entry);
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package pr0x79.instrumentation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe cache of the class header metadata used to resolve type hierarchies,
+ * e.g. by the {@link InstrumentationClassWriter} and the {@link ClassRelationResolver}.
+ * The metadata and the type ids are cached per class loader, the loaders are only held weakly
+ * so that the cached types of a loader are discarded once the loader is unloaded.
+ * <p>
+ * Types are resolved in the following order, following the parent delegation of the loaders:
+ * <ol>
+ * <li>Headers of the classes that were instrumented by the class transformer, see {@link #putHeader(ClassLoader, TypeHeader)}</li>
+ * <li>The class file as resource of the class loader, only the missed type is read</li>
+ * </ol>
+ */
+public class TypeHierarchyCache {
+	private final WeakLoaderMap<LoaderCache> loaders = new WeakLoaderMap<>();
+
+	private static final class LoaderCache {
+		private final Map<String, TypeHeader> headers = new ConcurrentHashMap<>();
+		private final Map<TypePair, String> commonSuperClasses = new ConcurrentHashMap<>();
+		private final Map<String, BitSet> supertypes = new ConcurrentHashMap<>();
+
+		//Dense ids of all types that are part of a supertype closure of this loader
+		private final Map<String, Integer> typeIds = new ConcurrentHashMap<>();
+		private final List<String> typeNames = new ArrayList<>();
+
+		private int getTypeId(String type) {
+			Integer id = this.typeIds.get(type);
+			if(id == null) {
+				synchronized(this.typeNames) {
+					id = this.typeIds.get(type);
+					if(id == null) {
+						id = this.typeNames.size();
+						this.typeNames.add(type);
+						this.typeIds.put(type, id);
+					}
+				}
+			}
+			return id;
+		}
+	}
+
+	private static final class TypePair {
+		private final String type1, type2;
+
+		private TypePair(String type1, String type2) {
+			this.type1 = type1;
+			this.type2 = type2;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.type1.hashCode() + this.type2.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof TypePair)) {
+				return false;
+			}
+			TypePair other = (TypePair) obj;
+			return this.type1.equals(other.type1) && this.type2.equals(other.type2);
+		}
+	}
+
+	/**
+	 * Resolves the common super class of two types
+	 */
+	@FunctionalInterface
+	public static interface CommonSuperClassResolver {
+		public String resolve(String type1, String type2) throws IOException;
+	}
+
+	/**
+	 * Returns the cache of the specified class loader
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param create Whether the cache should be created if it doesn't exist yet
+	 * @return
+	 */
+	private LoaderCache getLoaderCache(ClassLoader loader, boolean create) {
+		LoaderCache cache = this.loaders.get(loader);
+		if(cache == null && create) {
+			LoaderCache created = new LoaderCache();
+			cache = this.loaders.putIfAbsent(loader, created);
+			if(cache == null) {
+				cache = created;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Adds the header of a class defined by the specified class loader, e.g. a class
+	 * that is currently being transformed. Replaces the previous header of the class
+	 * @param loader The defining class loader, or null for the bootstrap class loader
+	 * @param header
+	 */
+	public void putHeader(ClassLoader loader, TypeHeader header) {
+		this.getLoaderCache(loader, true).headers.put(header.getName(), header);
+	}
+
+	/**
+	 * Returns the header metadata of the specified type as seen by the specified class loader
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param type The internal name of the type
+	 * @return
+	 * @throws IOException if the class file of the type cannot be read
+	 */
+	public TypeHeader getHeader(ClassLoader loader, String type) throws IOException {
+		TypeHeader header = this.findHeader(loader, type);
+		if(header == null) {
+			header = readHeader(loader, type);
+			TypeHeader previous = this.getLoaderCache(loader, true).headers.putIfAbsent(type, header);
+			if(previous != null) {
+				header = previous;
+			}
+		}
+		return header;
+	}
+
+	/**
+	 * Looks up the cached header of the specified type in the caches of the class loader
+	 * and its parents
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param type The internal name of the type
+	 * @return The header, or null if it is not cached
+	 */
+	private TypeHeader findHeader(ClassLoader loader, String type) {
+		while(true) {
+			LoaderCache cache = this.getLoaderCache(loader, false);
+			if(cache != null) {
+				TypeHeader header = cache.headers.get(type);
+				if(header != null) {
+					return header;
+				}
+			}
+			if(loader == null) {
+				return null;
+			}
+			loader = loader.getParent();
+		}
+	}
+
+	/**
+	 * Returns the memoized common super class of the specified types, or resolves
+	 * and memoizes it if it has not been resolved for the specified class loader yet
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param type1 The internal name of the first type
+	 * @param type2 The internal name of the second type
+	 * @param resolver Resolves the common super class if it is not memoized
+	 * @return
+	 * @throws IOException
+	 */
+	public String getCommonSuperClass(ClassLoader loader, String type1, String type2, CommonSuperClassResolver resolver) throws IOException {
+		LoaderCache cache = this.getLoaderCache(loader, true);
+		TypePair pair = new TypePair(type1, type2);
+		String commonSuperClass = cache.commonSuperClasses.get(pair);
+		if(commonSuperClass == null) {
+			commonSuperClass = resolver.resolve(type1, type2);
+			cache.commonSuperClasses.putIfAbsent(pair, commonSuperClass);
+		}
+		return commonSuperClass;
+	}
+
+	/**
+	 * Returns the dense id of the specified type. The ids are only valid for
+	 * the specified class loader
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param type The internal name of the type
+	 * @return
+	 */
+	public int getTypeId(ClassLoader loader, String type) {
+		return this.getLoaderCache(loader, true).getTypeId(type);
+	}
+
+	/**
+	 * Returns the internal name of the type with the specified dense id
+	 * @param loader The class loader that assigned the id, or null for the bootstrap class loader
+	 * @param id
+	 * @return
+	 */
+	public String getTypeName(ClassLoader loader, int id) {
+		LoaderCache cache = this.getLoaderCache(loader, true);
+		synchronized(cache.typeNames) {
+			return cache.typeNames.get(id);
+		}
+	}
+
+	/**
+	 * Returns whether type is a subtype of superType, i.e. whether superType
+	 * is a superclass or a directly or indirectly implemented interface of type.
+	 * A type is not a subtype of itself
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param type The internal name of the type
+	 * @param superType The internal name of the potential supertype
+	 * @return
+	 * @throws IOException if the hierarchy of the type cannot be resolved
+	 */
+	public boolean isSubtype(ClassLoader loader, String type, String superType) throws IOException {
+		LoaderCache cache = this.getLoaderCache(loader, true);
+		Integer superTypeId = cache.typeIds.get(superType);
+		if(superTypeId == null) {
+			//Types are assigned an id once they are part of a closure
+			this.getSupertypeIds(loader, type);
+			superTypeId = cache.typeIds.get(superType);
+		}
+		return superTypeId != null && this.getSupertypeIds(loader, type).get(superTypeId);
+	}
+
+	/**
+	 * Returns the memoized transitive supertype closure of the specified type as a set
+	 * of type ids of the class loader, see {@link #getTypeId(ClassLoader, String)}. The closure contains all superclasses
+	 * and directly or indirectly implemented interfaces except for java/lang/Object.
+	 * The returned set is shared and must not be modified
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param type The internal name of the type
+	 * @return
+	 * @throws IOException if the hierarchy of the type cannot be resolved
+	 */
+	public BitSet getSupertypeIds(ClassLoader loader, String type) throws IOException {
+		LoaderCache cache = this.getLoaderCache(loader, true);
+		BitSet closure = cache.supertypes.get(type);
+		if(closure == null) {
+			closure = this.computeSupertypeIds(cache, loader, type, new HashSet<>());
+		}
+		return closure;
+	}
+
+	private BitSet computeSupertypeIds(LoaderCache cache, ClassLoader loader, String type, Set<String> visiting) throws IOException {
+		BitSet closure = cache.supertypes.get(type);
+		if(closure != null) {
+			return closure;
+		}
+		if(!visiting.add(type)) {
+			throw new IOException(String.format("Cyclic type hierarchy of %s", type));
+		}
+		closure = new BitSet();
+		if(!"java/lang/Object".equals(type)) {
+			TypeHeader header = this.getHeader(loader, type);
+			String superName = header.getSuperName();
+			if(superName != null && !"java/lang/Object".equals(superName)) {
+				closure.or(this.computeSupertypeIds(cache, loader, superName, visiting));
+				closure.set(cache.getTypeId(superName));
+			}
+			for(String itf : header.getInterfaces()) {
+				//Already visited interfaces of diamond shaped hierarchies are memoized
+				if(itf.equals(superName) || closure.get(cache.getTypeId(itf))) {
+					continue;
+				}
+				closure.or(this.computeSupertypeIds(cache, loader, itf, visiting));
+				closure.set(cache.getTypeId(itf));
+			}
+		}
+		visiting.remove(type);
+		BitSet previous = cache.supertypes.putIfAbsent(type, closure);
+		return previous != null ? previous : closure;
+	}
+
+	/**
+	 * Reads the header metadata of the specified type from its class file
+	 * @param loader The class loader, or null for the bootstrap class loader
+	 * @param type The internal name of the type
+	 * @return
+	 * @throws IOException
+	 */
+	private static TypeHeader readHeader(ClassLoader loader, String type) throws IOException {
+		InputStream is = loader != null ? loader.getResourceAsStream(type + ".class") : ClassLoader.getSystemResourceAsStream(type + ".class");
+		if(is == null) {
+			throw new IOException(String.format("Class file of %s not found", type));
+		}
+		try {
+			return ClassHeaderReader.read(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * The access flags, name, super class and interfaces of a type
+	 */
+	public static class TypeHeader {
+		private final int access;
+		private final String name;
+		private final String superName;
+		private final String[] interfaces;
+
+		public TypeHeader(int access, String name, String superName, String[] interfaces) {
+			this.access = access;
+			this.name = name;
+			this.superName = superName;
+			this.interfaces = interfaces;
+		}
+
+		/**
+		 * Returns the access flags of the type
+		 * @return
+		 */
+		public int getAccess() {
+			return this.access;
+		}
+
+		/**
+		 * Returns the internal name of the type
+		 * @return
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Returns the internal name of the super class, or null for java/lang/Object
+		 * @return
+		 */
+		public String getSuperName() {
+			return this.superName;
+		}
+
+		/**
+		 * Returns the internal names of the directly implemented interfaces
+		 * @return
+		 */
+		public String[] getInterfaces() {
+			return this.interfaces.clone();
+		}
+	}
+}
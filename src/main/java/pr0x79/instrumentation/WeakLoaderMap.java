@@ -0,0 +1,96 @@
+package pr0x79.instrumentation;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A concurrent map from class loaders to values that does not lock. The class loaders are
+ * compared by identity and only held weakly, the entries of collected class loaders are removed
+ * on the next update. The bootstrap class loader is represented by null.
+ * <p>
+ * Values that change should be immutable and replaced with {@link #replace(ClassLoader, Object, Object)}
+ * @param <V>
+ */
+public class WeakLoaderMap<V> {
+	private final Map<LoaderKey, V> values = new ConcurrentHashMap<>();
+	private final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<>();
+	private final AtomicReference<V> bootstrapValue = new AtomicReference<>();
+
+	private static final class LoaderKey extends WeakReference<ClassLoader> {
+		private final int hash;
+
+		private LoaderKey(ClassLoader loader, ReferenceQueue<ClassLoader> queue) {
+			super(loader, queue);
+			this.hash = System.identityHashCode(loader);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof LoaderKey)) {
+				return false;
+			}
+			ClassLoader loader = this.get();
+			//Collected keys are only equal to themselves
+			return loader != null && loader == ((LoaderKey) obj).get();
+		}
+	}
+
+	/**
+	 * Returns the value of the specified class loader, or null
+	 * @param loader The class loader, null for the bootstrap class loader
+	 * @return
+	 */
+	public V get(ClassLoader loader) {
+		if(loader == null) {
+			return this.bootstrapValue.get();
+		}
+		return this.values.get(new LoaderKey(loader, null));
+	}
+
+	/**
+	 * Sets the value of the specified class loader if it has no value yet
+	 * @param loader The class loader, null for the bootstrap class loader
+	 * @param value
+	 * @return The current value, or null if the value was set
+	 */
+	public V putIfAbsent(ClassLoader loader, V value) {
+		if(loader == null) {
+			return this.bootstrapValue.compareAndSet(null, value) ? null : this.bootstrapValue.get();
+		}
+		this.expungeCollected();
+		return this.values.putIfAbsent(new LoaderKey(loader, this.collectedLoaders), value);
+	}
+
+	/**
+	 * Replaces the value of the specified class loader if it is still the expected value
+	 * @param loader The class loader, null for the bootstrap class loader
+	 * @param expected The value that was read with {@link #get(ClassLoader)}
+	 * @param value
+	 * @return Whether the value was replaced
+	 */
+	public boolean replace(ClassLoader loader, V expected, V value) {
+		if(loader == null) {
+			return this.bootstrapValue.compareAndSet(expected, value);
+		}
+		return this.values.replace(new LoaderKey(loader, null), expected, value);
+	}
+
+	private void expungeCollected() {
+		Reference<? extends ClassLoader> key;
+		while((key = this.collectedLoaders.poll()) != null) {
+			this.values.remove(key);
+		}
+	}
+}
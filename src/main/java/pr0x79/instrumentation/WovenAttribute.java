@@ -0,0 +1,99 @@
+package pr0x79.instrumentation;
+
+import java.nio.charset.StandardCharsets;
+
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Class attribute that marks a class as woven ahead of time. Woven classes already
+ * contain their instrumentation and must not be instrumented again when they are loaded.
+ * The attribute contains the {@link InstrumentationFingerprint} the class was woven with,
+ * or nothing if the instrumentation could not be fingerprinted
+ */
+public class WovenAttribute extends Attribute {
+	public static final String NAME = "pr0x79/Woven";
+
+	//Name of the attribute as it appears in the constant pool of woven classes
+	public static final byte[] NAME_BYTES = NAME.getBytes(StandardCharsets.UTF_8);
+
+	private final byte[] fingerprint;
+
+	/**
+	 * Creates the prototype of the attribute
+	 */
+	public WovenAttribute() {
+		this(new byte[0]);
+	}
+
+	/**
+	 * Creates a woven attribute with the specified fingerprint
+	 * @param fingerprint The {@link InstrumentationFingerprint}, can be empty
+	 */
+	public WovenAttribute(byte[] fingerprint) {
+		super(NAME);
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Returns the {@link InstrumentationFingerprint} the class was woven with,
+	 * empty if the instrumentation could not be fingerprinted
+	 * @return
+	 */
+	public byte[] getFingerprint() {
+		return this.fingerprint.clone();
+	}
+
+	@Override
+	protected Attribute read(ClassReader classReader, int offset, int length, char[] charBuffer, int codeAttributeOffset, Label[] labels) {
+		byte[] fingerprint = new byte[length];
+		for(int i = 0; i < length; i++) {
+			fingerprint[i] = (byte) classReader.readByte(offset + i);
+		}
+		return new WovenAttribute(fingerprint);
+	}
+
+	@Override
+	protected ByteVector write(ClassWriter classWriter, byte[] code, int codeLength, int maxStack, int maxLocals) {
+		return new ByteVector(this.fingerprint.length).putByteArray(this.fingerprint, 0, this.fingerprint.length);
+	}
+
+	/**
+	 * Returns whether the specified class file was woven ahead of time.
+	 * The class file is only parsed if its constant pool contains the attribute name
+	 * @param classFile
+	 * @return
+	 */
+	public static boolean isWoven(byte[] classFile) {
+		return readFingerprint(classFile) != null;
+	}
+
+	/**
+	 * Returns the {@link InstrumentationFingerprint} the specified class file was woven with.
+	 * The class file is only parsed if its constant pool contains the attribute name
+	 * @param classFile
+	 * @return The fingerprint, empty if the instrumentation could not be fingerprinted,
+	 * or null if the class was not woven
+	 */
+	public static byte[] readFingerprint(byte[] classFile) {
+		if(!ConstantPoolScanner.containsUtf8(classFile, NAME_BYTES)) {
+			return null;
+		}
+		//The name may also be used by a string constant
+		byte[][] fingerprint = new byte[1][];
+		new ClassReader(classFile).accept(new ClassVisitor(Opcodes.ASM9) {
+			@Override
+			public void visitAttribute(Attribute attribute) {
+				if(attribute instanceof WovenAttribute) {
+					fingerprint[0] = ((WovenAttribute) attribute).fingerprint;
+				}
+			}
+		}, new Attribute[] { new WovenAttribute() }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return fingerprint[0];
+	}
+}
@@ -1,12 +1,15 @@
 package pr0x79.instrumentation.accessor;
 
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeSet;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
@@ -14,19 +17,51 @@ import org.objectweb.asm.tree.ClassNode;
 
 import pr0x79.Bootstrapper;
 import pr0x79.instrumentation.BytecodeInstrumentation;
+import pr0x79.instrumentation.InstrumentationFingerprint;
 import pr0x79.instrumentation.exception.InstrumentorException;
 import pr0x79.instrumentation.identification.IClassIdentifier;
 import pr0x79.instrumentation.identification.Identifiers;
 
 /**
- * Registry for accessors
+ * Registry for accessors. Once the bootstrapper initialization ends the registry
+ * is frozen, see {@link #freeze()}
  */
 public class Accessors {
 	private final Bootstrapper bootstrapper;
 	private final Identifiers identifiers;
 	private final BytecodeInstrumentation instrumentor;
-	private final Map<String, List<ClassAccessorData>> accessorsById = new ConcurrentHashMap<>();
-	private final Map<String, ClassAccessorData> accessorsByClassName = new ConcurrentHashMap<>();
+	//Accessors by class name in registration order, guarded by this registry. Null once the registry is frozen
+	private Map<String, ClassAccessorData> registeredAccessors = new LinkedHashMap<>();
+	//Rebuilt after each registration until the registry is frozen
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Immutable snapshot of the registered accessors
+	 */
+	private static final class Snapshot {
+		//Backed by an array, can be iterated by index without allocation
+		private final List<ClassAccessorData> accessorList;
+		private final Map<String, ClassAccessorData> accessorsByClassName;
+		private final Map<String, List<ClassAccessorData>> accessorsById;
+
+		private Snapshot(Map<String, ClassAccessorData> registeredAccessors) {
+			ClassAccessorData[] accessors = registeredAccessors.values().toArray(new ClassAccessorData[0]);
+			this.accessorList = Collections.unmodifiableList(Arrays.asList(accessors));
+			this.accessorsByClassName = Collections.unmodifiableMap(new HashMap<>(registeredAccessors));
+			Map<String, List<ClassAccessorData>> accessorsById = new HashMap<>();
+			for(ClassAccessorData accessor : accessors) {
+				List<ClassAccessorData> idAccessors = accessorsById.get(accessor.getIdentifierId());
+				if(idAccessors == null) {
+					accessorsById.put(accessor.getIdentifierId(), idAccessors = new ArrayList<>(1));
+				}
+				idAccessors.add(accessor);
+			}
+			for(Map.Entry<String, List<ClassAccessorData>> entry : accessorsById.entrySet()) {
+				entry.setValue(Collections.unmodifiableList(entry.getValue()));
+			}
+			this.accessorsById = Collections.unmodifiableMap(accessorsById);
+		}
+	}
 
 	public Accessors(Bootstrapper bootstrapper, Identifiers identifiers, BytecodeInstrumentation instrumentor) {
 		this.bootstrapper = bootstrapper;
@@ -71,12 +106,36 @@ public class Accessors {
 		}
 
 		ClassAccessorData accessorData = new ClassAccessorData(classIdentifierId, this.identifiers, className, clsNode, clsIdentifier, this.instrumentor);
-		List<ClassAccessorData> accessors = this.accessorsById.get(classIdentifierId);
-		if(accessors == null) {
-			this.accessorsById.put(classIdentifierId, accessors = new ArrayList<>());
+		synchronized(this) {
+			if(this.registeredAccessors == null) {
+				throw new InstrumentorException(String.format("Accessor %s must be registered during the bootstrap initialization", className));
+			}
+			this.registeredAccessors.put(className, accessorData);
+			this.snapshot = null;
 		}
-		accessors.add(accessorData);
-		this.accessorsByClassName.put(className, accessorData);
+	}
+
+	/**
+	 * Freezes the registry, no accessors can be registered afterwards
+	 */
+	public synchronized void freeze() {
+		if(this.registeredAccessors != null) {
+			this.snapshot = new Snapshot(this.registeredAccessors);
+			this.registeredAccessors = null;
+		}
+	}
+
+	private Snapshot getSnapshot() {
+		Snapshot snapshot = this.snapshot;
+		if(snapshot == null) {
+			synchronized(this) {
+				if(this.snapshot == null) {
+					this.snapshot = new Snapshot(this.registeredAccessors);
+				}
+				snapshot = this.snapshot;
+			}
+		}
+		return snapshot;
 	}
 
 	/**
@@ -85,7 +144,7 @@ public class Accessors {
 	 * @return
 	 */
 	public ClassAccessorData getAccessorByClassName(String name) {
-		return this.accessorsByClassName.get(name);
+		return this.getSnapshot().accessorsByClassName.get(name);
 	}
 
 	/**
@@ -94,14 +153,26 @@ public class Accessors {
 	 * @return
 	 */
 	public List<ClassAccessorData> getAccessorsById(String name) {
-		return this.accessorsById.get(name);
+		return this.getSnapshot().accessorsById.get(name);
 	}
 
 	/**
-	 * Returns all class accessors
+	 * Returns all class accessors in registration order
 	 * @return
 	 */
-	public Collection<ClassAccessorData> getClassAccessors() {
-		return Collections.unmodifiableCollection(this.accessorsByClassName.values());
+	public List<ClassAccessorData> getClassAccessors() {
+		return this.getSnapshot().accessorList;
+	}
+
+	/**
+	 * Adds the class files of all registered accessors to the fingerprint
+	 * @param digest
+	 * @throws IOException if an accessor class file cannot be read
+	 */
+	public void updateFingerprint(MessageDigest digest) throws IOException {
+		for(String className : new TreeSet<>(this.getSnapshot().accessorsByClassName.keySet())) {
+			//Accessors are read through the system class loader, see registerAccessor
+			InstrumentationFingerprint.updateClassFile(digest, className.replace('.', '/'), ClassLoader.getSystemClassLoader());
+		}
 	}
 }
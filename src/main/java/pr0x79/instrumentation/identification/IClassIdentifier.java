@@ -17,6 +17,17 @@ public interface IClassIdentifier {
 		throw new InstrumentorException("Dynamic mapping not implemented");
 	}
 
+	/**
+	 * Returns the internal name prefixes (e.g. <code>com/example/</code>) of all classes
+	 * that can possibly be identified by a dynamic identifier. {@link #isIdentifiedClass(String)}
+	 * is only called for classes that start with one of these prefixes.
+	 * If null, {@link #isIdentifiedClass(String)} is called for all classes
+	 * @return
+	 */
+	public default String[] getCandidatePrefixes() {
+		return null;
+	}
+
 	/**
 	 * Returns the class' names
 	 * @return
@@ -25,6 +36,17 @@ public interface IClassIdentifier {
 		throw new InstrumentorException("Static mapping not implemented");
 	}
 
+	/**
+	 * Returns a fingerprint of a dynamic identification that changes whenever
+	 * {@link #isIdentifiedClass(String)} may identify different classes. Static identifiers
+	 * are fingerprinted by their {@link #getClassNames()}.
+	 * If null, classes are not cached persistently
+	 * @return
+	 */
+	public default String getFingerprint() {
+		return null;
+	}
+
 	/**
 	 * Returns whether the identification is static ({@link #getClassNames()}) or dynamic ({@link #isIdentifiedClass(MethodNode)})
 	 * @return
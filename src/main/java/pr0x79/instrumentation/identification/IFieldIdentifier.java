@@ -85,6 +85,17 @@ public interface IFieldIdentifier {
 		throw new InstrumentorException("Static mapping not implemented");
 	}
 
+	/**
+	 * Returns a fingerprint of a dynamic identification that changes whenever
+	 * {@link #isIdentifiedField(FieldNode)} may identify different fields. Static identifiers
+	 * are fingerprinted by their {@link #getFields()}.
+	 * If null, classes are not cached persistently
+	 * @return
+	 */
+	public default String getFingerprint() {
+		return null;
+	}
+
 	/**
 	 * Returns whether the identification is static ({@link #getFields()}) or dynamic ({@link #isIdentifiedField(FieldNode)})
 	 * @return
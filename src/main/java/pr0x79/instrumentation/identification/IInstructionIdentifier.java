@@ -18,7 +18,21 @@ public interface IInstructionIdentifier {
 	public InstructionType getType();
 
 	/**
-	 * Returns the index of the instruction to identify, or -1 if not found
+	 * Returns a fingerprint of the identification, e.g. of the mapping this identifier was
+	 * created from. The fingerprint must change whenever {@link #identify(MethodNode)} may
+	 * return a different index, it is used to invalidate persistently cached classes.
+	 * If null, classes are not cached persistently
+	 * @return
+	 */
+	public default String getFingerprint() {
+		return null;
+	}
+
+	/**
+	 * Returns the index of the instruction to identify, or -1 if not found.
+	 * The method is always the unmodified method as read from the class file, even if
+	 * several accessors intercept it. The index therefore never depends on the code
+	 * inserted by other accessors or on the order in which the accessors were registered
 	 * @param method
 	 * @return
 	 */
@@ -85,6 +85,17 @@ public interface IMethodIdentifier {
 		throw new InstrumentorException("Static mapping not implemented");
 	}
 
+	/**
+	 * Returns a fingerprint of a dynamic identification that changes whenever
+	 * {@link #isIdentifiedMethod(MethodNode)} may identify different methods. Static identifiers
+	 * are fingerprinted by their {@link #getMethods()}.
+	 * If null, classes are not cached persistently
+	 * @return
+	 */
+	public default String getFingerprint() {
+		return null;
+	}
+
 	/**
 	 * Returns whether the identification is static ({@link #getMethods()}) or dynamic ({@link #isIdentifiedMethod(MethodNode)})
 	 * @return
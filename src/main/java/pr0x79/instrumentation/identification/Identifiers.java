@@ -1,21 +1,88 @@
 package pr0x79.instrumentation.identification;
 
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
 
 import pr0x79.Bootstrapper;
+import pr0x79.instrumentation.InstrumentationFingerprint;
+import pr0x79.instrumentation.identification.IFieldIdentifier.FieldDescription;
+import pr0x79.instrumentation.identification.IMethodIdentifier.MethodDescription;
 
 /**
- * Registry for identifiers
+ * Registry for identifiers. Once the bootstrapper initialization ends the registry
+ * is frozen, see {@link #freeze()}
  */
 public class Identifiers {
 	private final Bootstrapper bootstrapper;
-	private final Map<String, IClassIdentifier> classIdentifiers = new ConcurrentHashMap<>();
-	private final Map<String, IFieldIdentifier> fieldIdentifiers = new ConcurrentHashMap<>();
-	private final Map<String, IMethodIdentifier> methodIdentifiers = new ConcurrentHashMap<>();
-	private final Map<String, IInstructionIdentifier> instructionIdentifiers = new ConcurrentHashMap<>();
+	private final Registry<IClassIdentifier> classIdentifiers = new Registry<>("class");
+	private final Registry<IFieldIdentifier> fieldIdentifiers = new Registry<>("field");
+	private final Registry<IMethodIdentifier> methodIdentifiers = new Registry<>("method");
+	private final Registry<IInstructionIdentifier> instructionIdentifiers = new Registry<>("instruction");
+
+	/**
+	 * Identifiers of one kind. Until the registry is frozen the identifiers are registered
+	 * in a map guarded by the registry, lookups use a snapshot that is rebuilt after each registration.
+	 * Once frozen, the snapshot is final and lookups no longer lock
+	 * @param <T>
+	 */
+	private static final class Registry<T> {
+		private final String kind;
+		//Null once the registry is frozen
+		private Map<String, T> registered = new HashMap<>();
+		private volatile Snapshot<T> snapshot;
+
+		private Registry(String kind) {
+			this.kind = kind;
+		}
+
+		private synchronized void register(String id, T identifier) {
+			if(this.registered == null) {
+				throw new RuntimeException("Identifiers must be registered during the bootstrap initialization");
+			}
+			if(this.registered.containsKey(id)) {
+				throw new RuntimeException(String.format("Duplicate %s identifiers: %s", this.kind, id));
+			}
+			this.registered.put(id, identifier);
+			this.snapshot = null;
+		}
+
+		private Snapshot<T> getSnapshot() {
+			Snapshot<T> snapshot = this.snapshot;
+			if(snapshot == null) {
+				synchronized(this) {
+					if(this.snapshot == null) {
+						this.snapshot = new Snapshot<>(this.registered);
+					}
+					snapshot = this.snapshot;
+				}
+			}
+			return snapshot;
+		}
+
+		private synchronized void freeze() {
+			if(this.registered != null) {
+				this.snapshot = new Snapshot<>(this.registered);
+				this.registered = null;
+			}
+		}
+	}
+
+	private static final class Snapshot<T> {
+		private final Map<String, T> identifiers;
+		private final List<T> values;
+
+		private Snapshot(Map<String, T> identifiers) {
+			this.identifiers = Collections.unmodifiableMap(new HashMap<>(identifiers));
+			this.values = Collections.unmodifiableList(new ArrayList<>(identifiers.values()));
+		}
+	}
 
 	public Identifiers(Bootstrapper bootstrapper) {
 		this.bootstrapper = bootstrapper;
@@ -28,10 +95,7 @@ public class Identifiers {
 	 */
 	public void registerClassIdentifier(String id, IClassIdentifier identifier) {
 		this.checkBootstrapperState();
-		if(this.classIdentifiers.containsKey(id)) {
-			throw new RuntimeException(String.format("Duplicate class identifiers: %s", id));
-		}
-		this.classIdentifiers.put(id, identifier);
+		this.classIdentifiers.register(id, identifier);
 	}
 
 	/**
@@ -40,7 +104,7 @@ public class Identifiers {
 	 * @return
 	 */
 	public IClassIdentifier getClassIdentifier(String id) {
-		return this.classIdentifiers.get(id);
+		return this.classIdentifiers.getSnapshot().identifiers.get(id);
 	}
 
 	/**
@@ -48,7 +112,7 @@ public class Identifiers {
 	 * @return
 	 */
 	public Collection<IClassIdentifier> getClassIdentifiers() {
-		return Collections.unmodifiableCollection(this.classIdentifiers.values());
+		return this.classIdentifiers.getSnapshot().values;
 	}
 
 	/**
@@ -58,10 +122,7 @@ public class Identifiers {
 	 */
 	public void registerFieldIdentifier(String id, IFieldIdentifier identifier) {
 		this.checkBootstrapperState();
-		if(this.fieldIdentifiers.containsKey(id)) {
-			throw new RuntimeException(String.format("Duplicate field identifiers: %s", id));
-		}
-		this.fieldIdentifiers.put(id, identifier);
+		this.fieldIdentifiers.register(id, identifier);
 	}
 
 	/**
@@ -70,7 +131,7 @@ public class Identifiers {
 	 * @return
 	 */
 	public IFieldIdentifier getFieldIdentifier(String id) {
-		return this.fieldIdentifiers.get(id);
+		return this.fieldIdentifiers.getSnapshot().identifiers.get(id);
 	}
 
 	/**
@@ -78,7 +139,7 @@ public class Identifiers {
 	 * @return
 	 */
 	public Collection<IFieldIdentifier> getFieldIdentifiers() {
-		return Collections.unmodifiableCollection(this.fieldIdentifiers.values());
+		return this.fieldIdentifiers.getSnapshot().values;
 	}
 
 	/**
@@ -88,10 +149,7 @@ public class Identifiers {
 	 */
 	public void registerMethodIdentifier(String id, IMethodIdentifier identifier) {
 		this.checkBootstrapperState();
-		if(this.methodIdentifiers.containsKey(id)) {
-			throw new RuntimeException(String.format("Duplicate method identifiers: %s", id));
-		}
-		this.methodIdentifiers.put(id, identifier);
+		this.methodIdentifiers.register(id, identifier);
 	}
 
 	/**
@@ -100,7 +158,7 @@ public class Identifiers {
 	 * @return
 	 */
 	public IMethodIdentifier getMethodIdentifier(String id) {
-		return this.methodIdentifiers.get(id);
+		return this.methodIdentifiers.getSnapshot().identifiers.get(id);
 	}
 
 	/**
@@ -108,7 +166,7 @@ public class Identifiers {
 	 * @return
 	 */
 	public Collection<IMethodIdentifier> getMethodIdentifiers() {
-		return Collections.unmodifiableCollection(this.methodIdentifiers.values());
+		return this.methodIdentifiers.getSnapshot().values;
 	}
 
 	/**
@@ -118,10 +176,7 @@ public class Identifiers {
 	 */
 	public void registerInstructionIdentifier(String id, IInstructionIdentifier identifier) {
 		this.checkBootstrapperState();
-		if(this.instructionIdentifiers.containsKey(id)) {
-			throw new RuntimeException(String.format("Duplicate instruction identifiers: %s", id));
-		}
-		this.instructionIdentifiers.put(id, identifier);
+		this.instructionIdentifiers.register(id, identifier);
 	}
 
 	/**
@@ -130,7 +185,7 @@ public class Identifiers {
 	 * @return
 	 */
 	public IInstructionIdentifier getInstructionIdentifier(String id) {
-		return this.instructionIdentifiers.get(id);
+		return this.instructionIdentifiers.getSnapshot().identifiers.get(id);
 	}
 
 	/**
@@ -138,7 +193,85 @@ public class Identifiers {
 	 * @return
 	 */
 	public Collection<IInstructionIdentifier> getInstructionIdentifiers() {
-		return Collections.unmodifiableCollection(this.instructionIdentifiers.values());
+		return this.instructionIdentifiers.getSnapshot().values;
+	}
+
+	/**
+	 * Adds the ids and the identifications of all registered identifiers to the fingerprint.
+	 * Static identifiers are fingerprinted by their names and descriptors, dynamic
+	 * identifiers by their implementation class and their fingerprint
+	 * @param digest
+	 * @return False if a dynamic identifier does not provide a fingerprint or has no class file,
+	 * e.g. if it is a lambda
+	 * @throws IOException if the class file of a dynamic identifier cannot be read
+	 */
+	public boolean updateFingerprint(MessageDigest digest) throws IOException {
+		for(Map.Entry<String, IClassIdentifier> entry : new TreeMap<>(this.classIdentifiers.getSnapshot().identifiers).entrySet()) {
+			IClassIdentifier identifier = entry.getValue();
+			String fingerprint = identifier.isStatic() ? String.join(";", identifier.getClassNames()) : identifier.getFingerprint();
+			if(!updateFingerprint(digest, "class", entry.getKey(), identifier, identifier.isStatic(), fingerprint)) {
+				return false;
+			}
+		}
+		for(Map.Entry<String, IFieldIdentifier> entry : new TreeMap<>(this.fieldIdentifiers.getSnapshot().identifiers).entrySet()) {
+			IFieldIdentifier identifier = entry.getValue();
+			String fingerprint = identifier.getFingerprint();
+			if(identifier.isStatic()) {
+				StringBuilder fields = new StringBuilder();
+				for(FieldDescription field : identifier.getFields()) {
+					fields.append(field.getName()).append(':').append(field.getDescriptor()).append(';');
+				}
+				fingerprint = fields.toString();
+			}
+			if(!updateFingerprint(digest, "field", entry.getKey(), identifier, identifier.isStatic(), fingerprint)) {
+				return false;
+			}
+		}
+		for(Map.Entry<String, IMethodIdentifier> entry : new TreeMap<>(this.methodIdentifiers.getSnapshot().identifiers).entrySet()) {
+			IMethodIdentifier identifier = entry.getValue();
+			String fingerprint = identifier.getFingerprint();
+			if(identifier.isStatic()) {
+				StringBuilder methods = new StringBuilder();
+				for(MethodDescription method : identifier.getMethods()) {
+					methods.append(method.getName()).append(method.getDescriptor()).append(';');
+				}
+				fingerprint = methods.toString();
+			}
+			if(!updateFingerprint(digest, "method", entry.getKey(), identifier, identifier.isStatic(), fingerprint)) {
+				return false;
+			}
+		}
+		for(Map.Entry<String, IInstructionIdentifier> entry : new TreeMap<>(this.instructionIdentifiers.getSnapshot().identifiers).entrySet()) {
+			IInstructionIdentifier identifier = entry.getValue();
+			if(!updateFingerprint(digest, "instruction", entry.getKey(), identifier, false, identifier.getFingerprint())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean updateFingerprint(MessageDigest digest, String kind, String id, Object identifier, boolean isStatic, String fingerprint) throws IOException {
+		if(fingerprint == null) {
+			return false;
+		}
+		InstrumentationFingerprint.update(digest, kind);
+		InstrumentationFingerprint.update(digest, id);
+		InstrumentationFingerprint.update(digest, fingerprint);
+		if(!isStatic) {
+			//The behaviour of dynamic identifiers depends on their implementation
+			return InstrumentationFingerprint.tryUpdateClassFile(digest, identifier.getClass());
+		}
+		return true;
+	}
+
+	/**
+	 * Freezes the registry, no identifiers can be registered afterwards
+	 */
+	public void freeze() {
+		this.classIdentifiers.freeze();
+		this.fieldIdentifiers.freeze();
+		this.methodIdentifiers.freeze();
+		this.instructionIdentifiers.freeze();
 	}
 
 	/**
@@ -0,0 +1,66 @@
+package pr0x79.metrics;
+
+/**
+ * Creates the flight recorder events of the class transformer. The events extend <code>jdk.jfr.Event</code>
+ * and are therefore not part of the core, which is compiled for Java 8. They are compiled from the
+ * <code>src/jfr</code> source set against Java 11 and are packaged with the agent. The events are looked
+ * up once, if they or <code>jdk.jfr</code> are not available, e.g. on Java 8, no events are created
+ * and all factory methods return null
+ */
+public final class FlightRecorderSupport {
+	private static final String EVENTS_CLASS = "pr0x79.metrics.FlightRecorderEvents";
+
+	private static final IFlightRecorderEvents EVENTS = loadEvents();
+
+	private FlightRecorderSupport() { }
+
+	/**
+	 * Creates an accept class event
+	 * @return The event, or null if the events are not available
+	 */
+	public static IAcceptClassEvent newAcceptClassEvent() {
+		return EVENTS != null ? EVENTS.newAcceptClassEvent() : null;
+	}
+
+	/**
+	 * Creates a class parse event
+	 * @return The event, or null if the events are not available
+	 */
+	public static IClassEvent newClassParseEvent() {
+		return EVENTS != null ? EVENTS.newClassParseEvent() : null;
+	}
+
+	/**
+	 * Creates an instrument class event
+	 * @return The event, or null if the events are not available
+	 */
+	public static IClassEvent newInstrumentClassEvent() {
+		return EVENTS != null ? EVENTS.newInstrumentClassEvent() : null;
+	}
+
+	/**
+	 * Creates a class write event
+	 * @return The event, or null if the events are not available
+	 */
+	public static IClassWriteEvent newClassWriteEvent() {
+		return EVENTS != null ? EVENTS.newClassWriteEvent() : null;
+	}
+
+	/**
+	 * Creates a jump analysis event
+	 * @return The event, or null if the events are not available
+	 */
+	public static IJumpAnalysisEvent newJumpAnalysisEvent() {
+		return EVENTS != null ? EVENTS.newJumpAnalysisEvent() : null;
+	}
+
+	private static IFlightRecorderEvents loadEvents() {
+		try {
+			//Loading the events also loads jdk.jfr.Event
+			Class<?> eventsCls = Class.forName(EVENTS_CLASS, true, FlightRecorderSupport.class.getClassLoader());
+			return (IFlightRecorderEvents) eventsCls.getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException | LinkageError ex) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package pr0x79.metrics;
+
+/**
+ * Decision whether a loaded class is an accessor or an instrumentation target
+ */
+public interface IAcceptClassEvent extends IClassEvent {
+	/**
+	 * Sets the decision
+	 * @param accessorCandidate Whether the class may be an accessor
+	 * @param targetCandidate Whether the class is targeted by an accessor or interceptor
+	 */
+	public void setDecision(boolean accessorCandidate, boolean targetCandidate);
+}
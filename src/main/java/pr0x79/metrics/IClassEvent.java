@@ -0,0 +1,31 @@
+package pr0x79.metrics;
+
+/**
+ * Flight recorder event of a class transformer phase, created by {@link FlightRecorderSupport}.
+ * The class is only set if {@link #shouldCommit()} returns true
+ */
+public interface IClassEvent {
+	/**
+	 * Starts the timing of the event
+	 */
+	public void begin();
+
+	/**
+	 * Returns whether the event is enabled and should be committed
+	 * @return
+	 */
+	public boolean shouldCommit();
+
+	/**
+	 * Sets the class of the event
+	 * @param className The internal name of the class
+	 * @param loader The class loader of the class, null for the bootstrap class loader
+	 * @param classSize The size of the class file
+	 */
+	public void setClass(String className, ClassLoader loader, long classSize);
+
+	/**
+	 * Ends the timing of the event and writes it
+	 */
+	public void commit();
+}
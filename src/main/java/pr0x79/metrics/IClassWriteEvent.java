@@ -0,0 +1,13 @@
+package pr0x79.metrics;
+
+/**
+ * Writing of an instrumented class node into a class file
+ */
+public interface IClassWriteEvent extends IClassEvent {
+	/**
+	 * Sets the result of the class writer
+	 * @param instrumentedClassSize The size of the instrumented class file
+	 * @param framesComputed Whether the frames of the class were computed
+	 */
+	public void setResult(long instrumentedClassSize, boolean framesComputed);
+}
@@ -0,0 +1,16 @@
+package pr0x79.metrics;
+
+/**
+ * Creates the flight recorder events of the class transformer, see {@link FlightRecorderSupport}
+ */
+public interface IFlightRecorderEvents {
+	public IAcceptClassEvent newAcceptClassEvent();
+
+	public IClassEvent newClassParseEvent();
+
+	public IClassEvent newInstrumentClassEvent();
+
+	public IClassWriteEvent newClassWriteEvent();
+
+	public IJumpAnalysisEvent newJumpAnalysisEvent();
+}
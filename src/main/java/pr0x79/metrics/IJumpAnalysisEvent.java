@@ -0,0 +1,32 @@
+package pr0x79.metrics;
+
+/**
+ * Data flow analysis of a method to validate the jump target of an interceptor,
+ * created by {@link FlightRecorderSupport}. The method is only set if {@link #shouldCommit()} returns true
+ */
+public interface IJumpAnalysisEvent {
+	/**
+	 * Starts the timing of the event
+	 */
+	public void begin();
+
+	/**
+	 * Returns whether the event is enabled and should be committed
+	 * @return
+	 */
+	public boolean shouldCommit();
+
+	/**
+	 * Sets the analyzed method
+	 * @param className The internal name of the class
+	 * @param methodName
+	 * @param methodDescriptor
+	 * @param instructions The number of instructions of the method
+	 */
+	public void setMethod(String className, String methodName, String methodDescriptor, int instructions);
+
+	/**
+	 * Ends the timing of the event and writes it
+	 */
+	public void commit();
+}
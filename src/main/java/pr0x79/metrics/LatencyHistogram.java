@@ -0,0 +1,88 @@
+package pr0x79.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of latencies in nanoseconds. Each latency is counted in the bucket
+ * of its power of two, the buckets are {@link LongAdder}s so that concurrent recording
+ * threads update different cells instead of contending on a single counter.
+ * Percentiles are therefore approximated by the upper bound of their bucket,
+ * limited to the largest recorded latency
+ */
+public class LatencyHistogram {
+	private static final int BUCKETS = 64;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for(int i = 0; i < BUCKETS; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records the specified latency
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		if(nanos < 0) {
+			nanos = 0;
+		}
+		this.buckets[BUCKETS - 1 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+		this.totalNanos.add(nanos);
+		this.maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * Returns a snapshot of the histogram. Latencies that are recorded concurrently
+	 * may or may not be included
+	 * @return
+	 */
+	public LatencySnapshot getSnapshot() {
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			counts[i] = this.buckets[i].sum();
+			count += counts[i];
+		}
+		long max = this.maxNanos.get();
+		//The upper bound of a bucket can be larger than the largest recorded latency
+		return new LatencySnapshot(count, this.totalNanos.sum(), max, Math.min(percentile(counts, count, 0.5D), max), Math.min(percentile(counts, count, 0.9D), max), Math.min(percentile(counts, count, 0.99D), max));
+	}
+
+	/**
+	 * Returns the upper bound of the bucket that contains the specified percentile
+	 * @param counts The bucket counts
+	 * @param count The total count
+	 * @param percentile
+	 * @return
+	 */
+	private static long percentile(long[] counts, long count, double percentile) {
+		if(count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * percentile);
+		long cumulative = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			cumulative += counts[i];
+			if(cumulative >= rank) {
+				return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Resets the histogram
+	 */
+	public void reset() {
+		for(LongAdder bucket : this.buckets) {
+			bucket.reset();
+		}
+		this.totalNanos.reset();
+		this.maxNanos.reset();
+	}
+}
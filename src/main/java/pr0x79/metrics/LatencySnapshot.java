@@ -0,0 +1,77 @@
+package pr0x79.metrics;
+
+/**
+ * Immutable snapshot of a {@link LatencyHistogram}. All latencies are in microseconds,
+ * the percentiles are the upper bounds of their histogram buckets
+ */
+public class LatencySnapshot {
+	private final long count;
+	private final long totalNanos;
+	private final long maxNanos;
+	private final long p50Nanos, p90Nanos, p99Nanos;
+
+	LatencySnapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos) {
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+	}
+
+	/**
+	 * Returns the number of recorded latencies
+	 * @return
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the sum of all recorded latencies
+	 * @return
+	 */
+	public double getTotalMicros() {
+		return this.totalNanos / 1000.0D;
+	}
+
+	/**
+	 * Returns the mean latency
+	 * @return
+	 */
+	public double getMeanMicros() {
+		return this.count == 0 ? 0 : this.totalNanos / 1000.0D / this.count;
+	}
+
+	/**
+	 * Returns the maximum latency
+	 * @return
+	 */
+	public double getMaxMicros() {
+		return this.maxNanos / 1000.0D;
+	}
+
+	/**
+	 * Returns the median latency
+	 * @return
+	 */
+	public double getP50Micros() {
+		return this.p50Nanos / 1000.0D;
+	}
+
+	/**
+	 * Returns the 90th percentile latency
+	 * @return
+	 */
+	public double getP90Micros() {
+		return this.p90Nanos / 1000.0D;
+	}
+
+	/**
+	 * Returns the 99th percentile latency
+	 * @return
+	 */
+	public double getP99Micros() {
+		return this.p99Nanos / 1000.0D;
+	}
+}
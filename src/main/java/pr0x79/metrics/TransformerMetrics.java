@@ -0,0 +1,166 @@
+package pr0x79.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the class transformer. All counters are
+ * {@link LongAdder}s and all histograms are {@link LatencyHistogram}s, recording never
+ * blocks and parallel class loading threads don't contend on shared counters
+ */
+public class TransformerMetrics implements TransformerMetricsMXBean {
+	public static final String OBJECT_NAME = "pr0x79:type=TransformerMetrics";
+
+	private final LongAdder classesSeen = new LongAdder();
+	private final LongAdder classesPreFiltered = new LongAdder();
+	private final LongAdder classesCached = new LongAdder();
+	private final LongAdder classesParsed = new LongAdder();
+	private final LongAdder classesInstrumented = new LongAdder();
+	private final LongAdder exceptions = new LongAdder();
+	private final LatencyHistogram parsing = new LatencyHistogram();
+	private final LatencyHistogram identification = new LatencyHistogram();
+	private final LatencyHistogram instrumentation = new LatencyHistogram();
+	private final LatencyHistogram classWriting = new LatencyHistogram();
+
+	/**
+	 * Registers the metrics in the platform MBean server
+	 * @throws JMException
+	 */
+	public void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(!server.isRegistered(name)) {
+			server.registerMBean(this, name);
+		}
+	}
+
+	/**
+	 * Called when a class is passed to the transformer
+	 */
+	public void onClassSeen() {
+		this.classesSeen.increment();
+	}
+
+	/**
+	 * Called when a class is rejected without being parsed
+	 */
+	public void onClassPreFiltered() {
+		this.classesPreFiltered.increment();
+	}
+
+	/**
+	 * Called when an instrumented class is read from the persistent or the shared class cache
+	 */
+	public void onClassCached() {
+		this.classesCached.increment();
+	}
+
+	/**
+	 * Called when a class was parsed
+	 * @param nanos The time spent parsing the class
+	 */
+	public void onClassParsed(long nanos) {
+		this.classesParsed.increment();
+		this.parsing.record(nanos);
+	}
+
+	/**
+	 * Called when the identifiers were bound to a class
+	 * @param nanos The time spent binding the identifiers
+	 */
+	public void onClassIdentified(long nanos) {
+		this.identification.record(nanos);
+	}
+
+	/**
+	 * Called when the instrumentation was applied to a class
+	 * @param nanos The time spent applying the instrumentation
+	 */
+	public void onClassInstrumented(long nanos) {
+		this.instrumentation.record(nanos);
+	}
+
+	/**
+	 * Called when an instrumented class was written
+	 * @param nanos The time spent writing the class
+	 */
+	public void onClassWritten(long nanos) {
+		this.classesInstrumented.increment();
+		this.classWriting.record(nanos);
+	}
+
+	/**
+	 * Called when an exception is passed to the instrumentors
+	 */
+	public void onException() {
+		this.exceptions.increment();
+	}
+
+	@Override
+	public long getClassesSeen() {
+		return this.classesSeen.sum();
+	}
+
+	@Override
+	public long getClassesPreFiltered() {
+		return this.classesPreFiltered.sum();
+	}
+
+	@Override
+	public long getClassesCached() {
+		return this.classesCached.sum();
+	}
+
+	@Override
+	public long getClassesParsed() {
+		return this.classesParsed.sum();
+	}
+
+	@Override
+	public long getClassesInstrumented() {
+		return this.classesInstrumented.sum();
+	}
+
+	@Override
+	public long getExceptions() {
+		return this.exceptions.sum();
+	}
+
+	@Override
+	public LatencySnapshot getParsing() {
+		return this.parsing.getSnapshot();
+	}
+
+	@Override
+	public LatencySnapshot getIdentification() {
+		return this.identification.getSnapshot();
+	}
+
+	@Override
+	public LatencySnapshot getInstrumentation() {
+		return this.instrumentation.getSnapshot();
+	}
+
+	@Override
+	public LatencySnapshot getClassWriting() {
+		return this.classWriting.getSnapshot();
+	}
+
+	@Override
+	public void reset() {
+		this.classesSeen.reset();
+		this.classesPreFiltered.reset();
+		this.classesCached.reset();
+		this.classesParsed.reset();
+		this.classesInstrumented.reset();
+		this.exceptions.reset();
+		this.parsing.reset();
+		this.identification.reset();
+		this.instrumentation.reset();
+		this.classWriting.reset();
+	}
+}
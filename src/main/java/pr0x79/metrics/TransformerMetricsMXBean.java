@@ -0,0 +1,72 @@
+package pr0x79.metrics;
+
+/**
+ * Management interface of the {@link TransformerMetrics}, registered
+ * in the platform MBean server as {@link TransformerMetrics#OBJECT_NAME}
+ */
+public interface TransformerMetricsMXBean {
+	/**
+	 * Returns the number of classes passed to the transformer
+	 * @return
+	 */
+	public long getClassesSeen();
+
+	/**
+	 * Returns the number of classes that were rejected without being parsed
+	 * @return
+	 */
+	public long getClassesPreFiltered();
+
+	/**
+	 * Returns the number of instrumented classes that were read from the persistent or the shared class cache
+	 * @return
+	 */
+	public long getClassesCached();
+
+	/**
+	 * Returns the number of parsed classes
+	 * @return
+	 */
+	public long getClassesParsed();
+
+	/**
+	 * Returns the number of instrumented classes
+	 * @return
+	 */
+	public long getClassesInstrumented();
+
+	/**
+	 * Returns the number of exceptions passed to the instrumentors
+	 * @return
+	 */
+	public long getExceptions();
+
+	/**
+	 * Returns the latencies of parsing the classes
+	 * @return
+	 */
+	public LatencySnapshot getParsing();
+
+	/**
+	 * Returns the latencies of binding the identifiers to the classes
+	 * @return
+	 */
+	public LatencySnapshot getIdentification();
+
+	/**
+	 * Returns the latencies of applying the instrumentation to the classes
+	 * @return
+	 */
+	public LatencySnapshot getInstrumentation();
+
+	/**
+	 * Returns the latencies of writing the instrumented classes
+	 * @return
+	 */
+	public LatencySnapshot getClassWriting();
+
+	/**
+	 * Resets all counters and histograms
+	 */
+	public void reset();
+}